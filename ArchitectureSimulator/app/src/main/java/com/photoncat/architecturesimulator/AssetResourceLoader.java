@@ -0,0 +1,26 @@
+package com.photoncat.architecturesimulator;
+
+import android.content.res.AssetManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.photoncat.architecturesimulator.simulator.util.ResourceLoader;
+
+/**
+ * Opens simulator resources from the app assets.
+ * @author Xu Ke
+ *
+ */
+public class AssetResourceLoader extends ResourceLoader {
+    private final AssetManager assets;
+
+    public AssetResourceLoader(AssetManager assets) {
+        this.assets = assets;
+    }
+
+    @Override
+    public InputStream open(String path) throws IOException {
+        return assets.open(path);
+    }
+}
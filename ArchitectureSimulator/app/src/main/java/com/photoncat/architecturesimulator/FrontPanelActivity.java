@@ -21,6 +21,8 @@ import android.widget.TextView;
 
 import com.photoncat.architecturesimulator.simulator.Machine;
 import com.photoncat.architecturesimulator.simulator.userInterface.MachineWrapper;
+import com.photoncat.architecturesimulator.simulator.util.ConfigurationCache;
+import com.photoncat.architecturesimulator.simulator.util.ResourceLoader;
 
 public class FrontPanelActivity extends AppCompatActivity {
 
@@ -49,6 +51,8 @@ public class FrontPanelActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         myself = this;
+        ResourceLoader.setDefault(new AssetResourceLoader(getAssets()));
+        ConfigurationCache.setDirectory(getCacheDir());
         machine = new MachineWrapper(new Machine());
 
         setContentView(R.layout.activity_front_panel);
@@ -4,6 +4,9 @@ import android.databinding.BaseObservable;
 import android.databinding.Bindable;
 import android.databinding.ObservableArrayList;
 import android.databinding.ObservableInt;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
 import android.view.View;
 
 import com.photoncat.architecturesimulator.BR;
@@ -11,9 +14,12 @@ import com.photoncat.architecturesimulator.BR;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.photoncat.architecturesimulator.simulator.Machine;
-import com.photoncat.architecturesimulator.simulator.chips.BulbSet;
+import com.photoncat.architecturesimulator.simulator.PanelState;
+import com.photoncat.architecturesimulator.simulator.SimulationThread;
 import com.photoncat.architecturesimulator.simulator.chips.Memory;
 import com.photoncat.architecturesimulator.simulator.chips.NumberedSwitch;
 import com.photoncat.architecturesimulator.simulator.chips.Switch;
@@ -21,7 +27,9 @@ import com.photoncat.architecturesimulator.simulator.chips.SwitchesSet;
 import com.photoncat.architecturesimulator.simulator.tools.AssemblyCompiler;
 
 /**
- * A wrapper class for machine intended to support features from data binding.
+ * A wrapper class for machine intended to support features from data binding.<br>
+ * The machine runs on a {@link SimulationThread}. Every action is posted to it, and every getter reads
+ * the latest {@link PanelState} it published, so the UI thread never waits for the simulation.
  * @author Xu Ke
  *
  */
@@ -33,128 +41,354 @@ public class MachineWrapper extends BaseObservable {
     public final ObservableArrayList<Boolean> switches = new ObservableArrayList<>();
 
 	public MachineWrapper(Machine machine) {
-    	this.machine = machine;
+    	// Recording is cheap enough to always allow stepping back on the panel.
+    	machine.startHistory();
+    	// Taken before the simulation thread owns the machine, so programs can be checked on the caller's thread.
+    	memorySize = ((Memory) machine.getChip("memory")).getSize();
+    	simulation = new SimulationThread(machine);
         for (int i = 0; i < 16; ++i) {
             valueBulbs.add(false);
             addressBulbs.add(false);
             switches.add(false);
         }
+        simulation.setListener(new SimulationThread.Listener() {
+            @Override
+            public void statePublished(PanelState published) {
+                // Asks for at most one frame at a time; it reads the newest state when it comes.
+                if (updatePosted.compareAndSet(false, true))
+                    mainThread.post(scheduleFrame);
+            }
+        });
+        simulation.start();
         updateEvent();
     }
-	
-    private Machine machine;
-    
+
+    private final SimulationThread simulation;
+    private final int memorySize;
+    /**
+     * The state shown now. Only used on the UI thread.
+     */
+    private PanelState state;
+    private final Handler mainThread = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean updatePosted = new AtomicBoolean(false);
+    private final Choreographer.FrameCallback frame = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            updatePosted.set(false);
+            updateEvent();
+        }
+    };
+    private final Runnable scheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(frame);
+        }
+    };
+    private int radioSwitch = 0;
+    private int registerRadioSwitch = 0;
+
 	// Define a getter for the property's value
 	@Bindable
-    public final String getProgramCounter(){ try{return machine.getChip("PC").toString();}catch(NullPointerException e){return "Not Found";} }
+    public final String getProgramCounter(){ return "Register value: " + state.pc; }
+	@Bindable
+    public final String getBus(){ return state.hasBus ? "Cable value: " + state.bus : "Not Found"; }
 	@Bindable
-    public final String getBus(){ try{return machine.getCable("bus").toString();}catch(NullPointerException e){return "Not Found";} }
+    public final String getMemoryAddressRegister(){ return "Register value: " + state.mar; }
 	@Bindable
-    public final String getMemoryAddressRegister(){ try{return machine.getChip("MAR").toString();}catch(NullPointerException e){return "Not Found";} }
+    public final String getMemoryBufferRegister(){ return "Register value: " + state.mbr; }
 	@Bindable
-    public final String getMemoryBufferRegister(){ try{return machine.getChip("MBR").toString();}catch(NullPointerException e){return "Not Found";} }
+    public final String getInstructionRegister(){ return "Register value: " + state.ir; }
 	@Bindable
-    public final String getInstructionRegister(){ try{return machine.getChip("IR").toString();}catch(NullPointerException e){return "Not Found";} }
+    public final String getGeneralPurposeRegisterFile(){
+		StringBuilder sb = new StringBuilder("Register File:\n");
+		for (int i = 0; i < state.getGeneralPurposeRegisterCount(); ++i)
+			sb.append(i).append(": Register value: ").append(state.getGeneralPurposeRegister(i)).append('\n');
+		return sb.toString();
+	}
 	@Bindable
-    public final String getGeneralPurposeRegisterFile(){ try{return machine.getChip("GPRF").toString();}catch(NullPointerException e){return "Not Found";} }
+    public final String getIndexRegisterFile(){
+		StringBuilder sb = new StringBuilder("Register File:\n");
+		for (int i = 0; i < state.getIndexRegisterCount(); ++i)
+			sb.append(i).append(": Register value: ").append(state.getIndexRegister(i)).append('\n');
+		return sb.toString();
+	}
 	@Bindable
-    public final String getIndexRegisterFile(){ try{return machine.getChip("IRF").toString();}catch(NullPointerException e){return "Not Found";} }
+    public final String getMemory(){ return state.memory; }
 	@Bindable
-    public final String getMemory(){ try{return machine.getChip("memory").toString();}catch(NullPointerException e){return "Not Found";} }
+    public final String getControlUnit(){ return state.controlUnit; }
 	@Bindable
-    public final String getControlUnit(){ try{return machine.getChip("CU").toString();}catch(NullPointerException e){return "Not Found";} }
+    public final Integer getRadioSwitch(){ return radioSwitch; }
+    public final void setRadioSwitch(final Integer value){
+    	radioSwitch = value;
+    	simulation.post(new SimulationThread.Command() {
+    		@Override
+    		public void run(Machine machine) {
+    			try{((NumberedSwitch) machine.getChip("panelDestSelectSwitch")).setValue(value);}catch(NullPointerException e){}
+    		}
+    	});
+    }
 	@Bindable
-    public final Integer getRadioSwitch(){ try{return ((NumberedSwitch) machine.getChip("panelDestSelectSwitch")).getValue();}catch(NullPointerException e){return 0;} }
-    public final void setRadioSwitch(Integer value){ try{((NumberedSwitch) machine.getChip("panelDestSelectSwitch")).setValue(value);}catch(NullPointerException e){} }
+    public final Integer getRegisterRadioSwitch(){ return registerRadioSwitch; }
+	public final void setRegisterRadioSwitch(final Integer value) {
+		registerRadioSwitch = value;
+    	simulation.post(new SimulationThread.Command() {
+    		@Override
+    		public void run(Machine machine) {
+    			try{((NumberedSwitch) machine.getChip("panelRegSelSwitch")).setValue(value);}catch(NullPointerException e){}
+    		}
+    	});
+	}
 	@Bindable
-    public final Integer getRegisterRadioSwitch(){ try{return ((NumberedSwitch) machine.getChip("panelRegSelSwitch")).getValue();}catch(NullPointerException e){return 0;}  }
-	public final void setRegisterRadioSwitch(Integer value) { try{((NumberedSwitch) machine.getChip("panelRegSelSwitch")).setValue(value);}catch(NullPointerException e){} }
+	public final Boolean getPaused(){ return state.paused; }
 	@Bindable
-	public final Boolean getPaused(){ try{return machine.getCable("paused").getBit(0);}catch(NullPointerException e){return false;} }
+	public final String getScreen(){ return state.screen; }
 	@Bindable
-	public final String getScreen(){ try{return machine.getScreen();}catch(NullPointerException e){return "Not Found";} }
-    
+	public final Boolean getRunning(){ return state.running; }
+
 	private boolean toTick = true;
+	/**
+	 * Cycles of continuous runs already counted in {@link #tick}.
+	 */
+	private long countedCycles = 0;
+	/**
+	 * Shows the latest published state. Only properties that changed since the shown state are notified,
+	 * and only bulbs that changed are set.
+	 */
 	private void updateEvent() {
-        notifyPropertyChanged(BR._all);
-        for (int i = 0; i < 16; ++i) {
-            try{ valueBulbs.set(i, ((BulbSet)machine.getChip("panelValue")).getBit(i)); }catch(NullPointerException e){valueBulbs.set(i, false);}
-            try{ addressBulbs.set(i, ((BulbSet)machine.getChip("panelAddress")).getBit(i)); }catch(NullPointerException e){valueBulbs.set(i, false);}
-            try{((SwitchesSet)machine.getChip("panelSwitchSet")).flipBit(i, switches.get(i));}catch(NullPointerException e){}
-        }
+		PanelState old = state;
+		state = simulation.getPanelState();
+		int changed = state.changedSince(old);
+		if (changed == 0)
+			return;
+		if (old == null) {
+			notifyPropertyChanged(BR._all);
+		} else {
+			notifyIfChanged(changed, PanelState.PC, BR.programCounter);
+			notifyIfChanged(changed, PanelState.BUS, BR.bus);
+			notifyIfChanged(changed, PanelState.MAR, BR.memoryAddressRegister);
+			notifyIfChanged(changed, PanelState.MBR, BR.memoryBufferRegister);
+			notifyIfChanged(changed, PanelState.IR, BR.instructionRegister);
+			notifyIfChanged(changed, PanelState.GPRF, BR.generalPurposeRegisterFile);
+			notifyIfChanged(changed, PanelState.IRF, BR.indexRegisterFile);
+			notifyIfChanged(changed, PanelState.MEMORY, BR.memory);
+			notifyIfChanged(changed, PanelState.CONTROL_UNIT, BR.controlUnit);
+			notifyIfChanged(changed, PanelState.PAUSED, BR.paused);
+			notifyIfChanged(changed, PanelState.SCREEN, BR.screen);
+			notifyIfChanged(changed, PanelState.RUNNING, BR.running);
+		}
+		if ((changed & PanelState.ERROR) != 0 && state.error != null)
+			state.error.printStackTrace();
+		if ((changed & PanelState.CYCLES) != 0) {
+			tick.set(tick.get() + (int) (state.cycles - countedCycles));
+			countedCycles = state.cycles;
+		}
+		if ((changed & PanelState.VALUE_BULBS) != 0)
+			updateBulbs(valueBulbs, old == null ? ~state.valueBulbs : old.valueBulbs, state.valueBulbs);
+		if ((changed & PanelState.ADDRESS_BULBS) != 0)
+			updateBulbs(addressBulbs, old == null ? ~state.addressBulbs : old.addressBulbs, state.addressBulbs);
+	}
+	private void notifyIfChanged(int changed, int property, int field) {
+		if ((changed & property) != 0)
+			notifyPropertyChanged(field);
+	}
+	/**
+	 * Sets only the bulbs that differ.
+	 * @param bulbs
+	 * @param oldBits
+	 * @param newBits
+	 */
+	private static void updateBulbs(ObservableArrayList<Boolean> bulbs, int oldBits, int newBits) {
+		int diff = oldBits ^ newBits;
+		for (int i = 0; i < bulbs.size(); ++i)
+			if ((diff >>> i & 1) != 0)
+				bulbs.set(i, (newBits >>> i & 1) != 0);
+	}
+	/**
+	 * Sends the switches on the panel to the machine.
+	 */
+	private void postSwitches() {
+		final boolean[] bits = new boolean[switches.size()];
+		for (int i = 0; i < bits.length; ++i)
+			bits[i] = switches.get(i);
+		simulation.post(new SimulationThread.Command() {
+			@Override
+			public void run(Machine machine) {
+				for (int i = 0; i < bits.length; ++i)
+					try{((SwitchesSet)machine.getChip("panelSwitchSet")).flipBit(i, bits[i]);}catch(NullPointerException e){}
+			}
+		});
 	}
     public void tick() {
+    	postSwitches();
     	if (toTick){
-    		machine.tick();
+    		simulation.post(new SimulationThread.Command() {
+    			@Override
+    			public void run(Machine machine) {
+    				machine.tick();
+    			}
+    		});
 			tick.set(tick.get() + 1);
     	} else {
-        	machine.evaluate();
+    		simulation.post(new SimulationThread.Command() {
+    			@Override
+    			public void run(Machine machine) {
+    				machine.evaluate();
+    			}
+    		});
     	}
     	toTick = !toTick;
-    	updateEvent();
+    }
+    /**
+     * Starts running the machine continuously, until it halts or {@link #stop()} is called.
+     */
+    public void run() {
+    	postSwitches();
+    	if (!toTick)
+    		forceUpdate();
+    	toTick = true;
+    	simulation.setRunning(true);
+    }
+    public void stop() {
+    	simulation.setRunning(false);
+    }
+    /**
+     * Undoes whole cycles.
+     * @param cycles
+     */
+    public void stepBack(final int cycles) {
+    	simulation.post(new SimulationThread.Command() {
+    		@Override
+    		public void run(Machine machine) {
+    			machine.stepBack(cycles);
+    		}
+    	});
+    	toTick = true;
     }
     @Bindable
     public void onCircleClick(View view) {
         forceTick();
     }
     public void forceTick() {
-    	machine.evaluate();
-    	machine.tick();
+    	postSwitches();
+    	simulation.post(new SimulationThread.Command() {
+    		@Override
+    		public void run(Machine machine) {
+    			machine.evaluate();
+    			machine.tick();
+    		}
+    	});
     	toTick = false;
     	tick.set(tick.get() + 1);
-    	updateEvent();
     }
     public void forceUpdate() {
-    	machine.evaluate();
-    	updateEvent();
+    	simulation.post(new SimulationThread.Command() {
+    		@Override
+    		public void run(Machine machine) {
+    			machine.evaluate();
+    		}
+    	});
     }
-	public void putProgram(String address, String program) throws IllegalStateException, NumberFormatException{
-		int intAddress = Integer.decode(address);
-		((Memory)machine.getChip("memory")).loadProgram(intAddress, AssemblyCompiler.compile(program));
-    	updateEvent();
+	/**
+	 * Compiles a program and loads it into memory. Everything is checked here, before the load is posted.
+	 * @throws IndexOutOfBoundsException When the program does not fit in memory at address.
+	 */
+	public void putProgram(String address, String program) throws IllegalStateException, NumberFormatException, IndexOutOfBoundsException{
+		final int intAddress = Integer.decode(address);
+		final AssemblyCompiler.CompiledProgram code = AssemblyCompiler.compile(program);
+		if (intAddress < 0 || intAddress > memorySize - code.size())
+			throw new IndexOutOfBoundsException("Program of " + code.size() + " words at " + intAddress + " does not fit in memory of " + memorySize);
+		simulation.post(new SimulationThread.Command() {
+			@Override
+			public void run(Machine machine) {
+				((Memory)machine.getChip("memory")).loadProgram(intAddress, code);
+			}
+		});
 	}
 	public void resetCUStatus() {
-		((Switch) machine.getChip("panelResetCU")).flip(true);
-		forceTick();
-		((Switch) machine.getChip("panelResetCU")).flip(false);
+		flipAround("panelResetCU", -1);
+		toTick = false;
+		tick.set(tick.get() + 1);
 	}
 	public void forceLoadMAR() {
 		loadSomething(1);
 	}
 	public void forceLoad() {
-		((Switch) machine.getChip("panelLoadSwitch")).flip(true);
-		forceTick();
-		((Switch) machine.getChip("panelLoadSwitch")).flip(false);
+		flipAround("panelLoadSwitch", -1);
+		toTick = false;
+		tick.set(tick.get() + 1);
 		forceUpdate();
 	}
 	private void loadSomething(int id) {
-		((Switch) machine.getChip("panelLoadSwitch")).flip(true);
-		int oldValue = getRadioSwitch();
-		setRadioSwitch(id);
-		forceTick();
-		((Switch) machine.getChip("panelLoadSwitch")).flip(false);
-		setRadioSwitch(oldValue);
+		flipAround("panelLoadSwitch", id);
+		toTick = false;
+		tick.set(tick.get() + 1);
 		forceUpdate();
 	}
+	/**
+	 * Turns a switch on for one forced tick, with the destination select switch on id during it.
+	 * @param name - Switch name.
+	 * @param id - Destination to select, -1 to leave the selection alone.
+	 */
+	private void flipAround(final String name, final int id) {
+		postSwitches();
+		simulation.post(new SimulationThread.Command() {
+			@Override
+			public void run(Machine machine) {
+				NumberedSwitch dest = (NumberedSwitch) machine.getChip("panelDestSelectSwitch");
+				int oldValue = 0;
+				if (id >= 0) {
+					oldValue = dest.getValue();
+					dest.setValue(id);
+				}
+				((Switch) machine.getChip(name)).flip(true);
+				machine.evaluate();
+				machine.tick();
+				((Switch) machine.getChip(name)).flip(false);
+				if (id >= 0)
+					dest.setValue(oldValue);
+			}
+		});
+	}
 	private boolean paused = false;
 	public void pauseOrRestore() {
 		paused = !paused;
-		((Switch) machine.getChip("panelPauseCU")).flip(paused);
+		final boolean pause = paused;
+		simulation.post(new SimulationThread.Command() {
+			@Override
+			public void run(Machine machine) {
+				((Switch) machine.getChip("panelPauseCU")).flip(pause);
+			}
+		});
 		forceUpdate();
 	}
 	public void IPLButton() {
-		machine.IPLMagic();
-    	updateEvent();
+		simulation.post(new SimulationThread.Command() {
+			@Override
+			public void run(Machine machine) {
+				machine.IPLMagic();
+			}
+		});
 	}
-	
-	public void keyPress(short key) {
-		machine.keyPress(key);
+
+	public void keyPress(final short key) {
+		simulation.post(new SimulationThread.Command() {
+			@Override
+			public void run(Machine machine) {
+				machine.keyPress(key);
+			}
+		});
 		forceUpdate();
 	}
-	
+
 	public void insertCard(File card) {
 		try {
-			machine.insertCard(new FileInputStream(card));
+			final InputStream in = new FileInputStream(card);
+			simulation.post(new SimulationThread.Command() {
+				@Override
+				public void run(Machine machine) {
+					machine.insertCard(in);
+				}
+			});
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		}
@@ -0,0 +1,75 @@
+package com.photoncat.architecturesimulator.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.CableAdapter;
+import com.photoncat.architecturesimulator.simulator.CablePartialAdapter;
+import com.photoncat.architecturesimulator.simulator.SingleCable;
+
+/**
+ * Cable operations every chip does on every evaluate, on each kind of cable.<br>
+ *
+ * The source value changes on every call, so assigns really write.
+ * @author Xu Ke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CableBenchmark {
+	/**
+	 * Kind of the cable written: a plain cable, a partial adapter on the middle of a wider cable, or an
+	 * adapter of the same width.
+	 */
+	@Param({"SingleCable", "CablePartialAdapter", "CableAdapter"})
+	public String kind;
+	@Param({"16"})
+	public int width;
+
+	private Cable source;
+	private Cable target;
+	private long value = 0;
+
+	@Setup
+	public void setUp() {
+		source = new SingleCable(width);
+		switch (kind) {
+		case "SingleCable":
+			target = new SingleCable(width);
+			break;
+		case "CablePartialAdapter":
+			target = new CablePartialAdapter(width, new SingleCable(width * 2), width / 2);
+			break;
+		case "CableAdapter":
+			target = new CableAdapter(width, new SingleCable(width));
+			break;
+		default:
+			throw new IllegalArgumentException(kind);
+		}
+	}
+
+	@Benchmark
+	public boolean assign() {
+		source.putValue(++value);
+		return target.assign(source);
+	}
+	@Benchmark
+	public long toInteger() {
+		return target.toInteger();
+	}
+	@Benchmark
+	public boolean partialAssign() {
+		source.putValue(++value);
+		return target.partialAssign(width / 4, source, 0, width / 2);
+	}
+}
@@ -0,0 +1,59 @@
+package com.photoncat.architecturesimulator.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.chips.Chip;
+
+/**
+ * A single chip, wired in a machine that has run part of the test program, so its ports hold real values.
+ * The machine is made with its front panel, so panel chips such as <i>panelLoadSelector</i>, the only
+ * Demux of the design, are evaluated with it.<br>
+ *
+ * {@link #evaluate()} runs on the settled machine: the cost of a chip finding nothing changed, which is what
+ * most evaluates of a cycle do. Stateful chips do their work after a tick, and the control unit returns at
+ * once from an evaluate without one, so {@link #tickAndEvaluate()} is their cost: each invocation ticks the
+ * chip on to its next state from the same inputs and evaluates it.
+ * @author Xu Ke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChipBenchmark {
+	/**
+	 * Chip name in <i>chipsDef.ini</i>: a Mux, a Demux, an Adder, the ALU, a RegisterFile, the Memory
+	 * and the ControlUnit.
+	 */
+	@Param({"PCInputSel", "panelLoadSelector", "EACalc", "ALU", "GPRF", "memory", "CU"})
+	public String chipName;
+
+	private Chip chip;
+
+	@Setup
+	public void setUp() throws IOException {
+		Machine machine = TestProgram.newMachine(false);
+		machine.run(5000);
+		chip = machine.getChip(chipName);
+	}
+
+	@Benchmark
+	public boolean evaluate() {
+		return chip.evaluate();
+	}
+	@Benchmark
+	public boolean tickAndEvaluate() {
+		chip.tick();
+		return chip.evaluate();
+	}
+}
@@ -0,0 +1,59 @@
+package com.photoncat.architecturesimulator.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+
+/**
+ * Whole machine cycles, tick and evaluate, running the test program.<br>
+ *
+ * Each invocation runs {@link #CYCLES} cycles from the booted machine, put back before every invocation.
+ * The test program halts after 8785 cycles, so every cycle measured runs the program, never a halted
+ * machine. Scores are per cycle.
+ * @author Xu Ke
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MachineBenchmark {
+	/**
+	 * Cycles run by an invocation, fewer than the test program takes to halt.
+	 */
+	private static final int CYCLES = 8192;
+	private Machine machine;
+	private byte[] booted;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		machine = TestProgram.newMachine();
+		booted = machine.snapshot();
+	}
+	/**
+	 * Restoring takes far less than a batch of cycles, so doing it per invocation skews nothing.
+	 */
+	@Setup(Level.Invocation)
+	public void restart() {
+		machine.restore(booted);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CYCLES)
+	public void cycle() {
+		for (int i = 0; i < CYCLES; ++i) {
+			machine.tick();
+			machine.evaluate();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.photoncat.architecturesimulator.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.tools.AssemblyCompiler;
+import com.photoncat.architecturesimulator.simulator.util.ResourceLoader;
+
+/**
+ * Sets up a machine running <i>conf/TestProgram1.prg</i>, the workload of the benchmarks.
+ * @author Xu Ke
+ *
+ */
+final class TestProgram {
+	/**
+	 * Where the boot program puts the test program, relative to its base address.
+	 */
+	private static final int ENTRY = 100;
+	/**
+	 * Numbers typed for the test program to read.
+	 */
+	private static final String KEYS = "12\n7\n30\n4\n0\n9\n";
+
+	private TestProgram() {}
+
+	/**
+	 * Makes a headless machine, boots it with the test program on a card and types its input.
+	 * @return The machine, ready to run.
+	 */
+	static Machine newMachine() throws IOException {
+		return newMachine(true);
+	}
+	/**
+	 * Makes a machine, boots it with the test program on a card and types its input.
+	 * @param headless - See {@link Machine#Machine(boolean)}.
+	 * @return The machine, ready to run.
+	 */
+	static Machine newMachine(boolean headless) throws IOException {
+		ByteArrayOutputStream card = new ByteArrayOutputStream();
+		card.write(ENTRY >> 8);
+		card.write(ENTRY);
+		for (short word : AssemblyCompiler.compile(new InputStreamReader(ResourceLoader.getDefault().open("conf/TestProgram1.prg")))) {
+			card.write(word >> 8);
+			card.write(word);
+		}
+		Machine machine = new Machine(headless);
+		machine.IPLMagic();
+		machine.insertCard(new ByteArrayInputStream(card.toByteArray()));
+		for (char c : KEYS.toCharArray())
+			machine.keyPress((short) c);
+		machine.evaluate();
+		return machine;
+	}
+}
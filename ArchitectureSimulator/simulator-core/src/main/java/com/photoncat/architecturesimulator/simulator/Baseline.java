@@ -0,0 +1,90 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.photoncat.architecturesimulator.simulator.chips.Chip;
+import com.photoncat.architecturesimulator.simulator.chips.IODevices;
+import com.photoncat.architecturesimulator.simulator.chips.Memory;
+
+/**
+ * A recorded state of a machine to go back to, by putting back only what changed since.<br>
+ *
+ * {@link StateWords} are compared with their recorded copy and the ones that differ are written back.
+ * Memories put back the words changed since, found by their write generation. IO device buffers are
+ * small and are loaded whole. Restoring a snapshot in between is fine, as loading memory stamps the words it
+ * changes with new generations.
+ * @author Xu Ke
+ *
+ */
+class Baseline {
+	private final StateWords words;
+	private final long[] baseline;
+	private final long[] current;
+	private final Memory[] memories;
+	private final IODevices[] devices;
+	private final byte[][] deviceStates;
+
+	/**
+	 * Constructor. Records the machine as it is now.
+	 * @param cables - Cables holding values.
+	 * @param chips - All chips.
+	 */
+	Baseline(Cable[] cables, Chip[] chips) {
+		words = new StateWords(cables, chips);
+		baseline = new long[words.size()];
+		current = new long[baseline.length];
+		words.read(baseline);
+		List<Memory> memoryList = new ArrayList<>();
+		List<IODevices> deviceList = new ArrayList<>();
+		for (Chip chip : chips) {
+			if (chip instanceof Memory)
+				memoryList.add((Memory) chip);
+			else if (chip instanceof IODevices)
+				deviceList.add((IODevices) chip);
+		}
+		memories = memoryList.toArray(new Memory[memoryList.size()]);
+		for (Memory memory : memories)
+			memory.markBaseline();
+		devices = deviceList.toArray(new IODevices[deviceList.size()]);
+		deviceStates = new byte[devices.length][];
+		for (int i = 0; i < devices.length; ++i) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try {
+				devices[i].saveState(new DataOutputStream(bytes));
+			} catch (IOException e) {
+				// Never happens for byte arrays.
+				throw new IllegalStateException(e);
+			}
+			deviceStates[i] = bytes.toByteArray();
+		}
+	}
+	/**
+	 * Puts the machine back to the baseline.
+	 * @return Number of words put back, counting memory words.
+	 */
+	int reset() {
+		int count = 0;
+		for (Memory memory : memories)
+			count += memory.resetToBaseline();
+		words.read(current);
+		for (int i = 0; i < current.length; ++i) {
+			if (current[i] != baseline[i]) {
+				words.write(i, baseline[i]);
+				count++;
+			}
+		}
+		try {
+			for (int i = 0; i < devices.length; ++i)
+				devices[i].loadState(new DataInputStream(new ByteArrayInputStream(deviceStates[i])));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return count;
+	}
+}
@@ -8,14 +8,6 @@ package com.photoncat.architecturesimulator.simulator;
  *
  */
 public abstract class Cable {
-	/**
-	 * An interface for extracting common ways in 
-	 * @author Xu Ke
-	 */
-	private interface AssignMappingMethod<T> {
-		public T map(T input);
-	}
-	
 	/**
 	 * replace cable value with another. Note that the input should share the same 
 	 * width with this one.
@@ -24,7 +16,7 @@ public abstract class Cable {
 	 */
 	public boolean assign(Cable input) {
 		// Calling real assign.
-		return realAssign(input, (c)->c);
+		return realAssign(input, false);
 	}
 	/**
 	 * replace cable value with another, but reversed. Note that the input should share the same 
@@ -34,21 +26,21 @@ public abstract class Cable {
 	 */
 	public boolean assignReverse(Cable input) {
 		// Calling real assign.
-		return realAssign(input, (c)->!c);
+		return realAssign(input, true);
 	}
 	/**
 	 * The function really does the assign job. Since there is assign and reversed assign, we extract the same part out.
 	 * @param input - Input cable.
-	 * @param mapping - Method used to map bit.
+	 * @param invert - If bits are inverted on the way.
 	 * @return
 	 */
-	private boolean realAssign(Cable input, AssignMappingMethod<Boolean> mapping) {
+	private boolean realAssign(Cable input, boolean invert) {
 		if (input == null) return false;
 		if (getWidth() < input.getWidth())
 			throw new IllegalStateException("Connecting wrong cables together.");
 		long initialValue = toInteger();
 		for (int i = 0; i < getWidth(); ++i) {
-			putBit(i, mapping.map(input.getBit(i)));
+			putBit(i, input.getBit(i) != invert);
 		}
 		return toInteger() != initialValue;
 	}
@@ -123,6 +115,13 @@ public abstract class Cable {
 			putBit(i, false);
 		return wasNotZero;
 	}
+	/**
+	 * Makes a cable like this one, holding the same value, for a copied machine. Cables this one shows are
+	 * copied through copies. Only called by {@link Copies#of(Cable)}, which makes each copy once.
+	 * @param copies
+	 * @return The copy.
+	 */
+	public abstract Cable copy(Copies copies);
 	/**
 	 * Gets a readable form.
 	 */
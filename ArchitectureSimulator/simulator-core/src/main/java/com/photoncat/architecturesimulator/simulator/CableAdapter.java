@@ -23,6 +23,11 @@ public class CableAdapter extends CablePartialAdapter {
 		super(width, cableInput, 0);
 	}
 	
+	@Override
+	public Cable copy(Copies copies) {
+		return new CableAdapter(width, copies.of(motherCable), offset);
+	}
+	
 	/**
 	 * By assign WILL reset mother cable.
 	 */
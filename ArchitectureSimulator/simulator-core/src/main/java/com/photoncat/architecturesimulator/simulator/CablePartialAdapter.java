@@ -45,6 +45,14 @@ public class CablePartialAdapter extends Cable {
 		motherCable = newMother;
 	}
 	
+	/**
+	 * The copy shows the copy of the mother cable.
+	 */
+	@Override
+	public Cable copy(Copies copies) {
+		return new CablePartialAdapter(width, copies.of(motherCable), offset);
+	}
+	
 	/**
 	 * By assign will NOT reset mother cable.
 	 */
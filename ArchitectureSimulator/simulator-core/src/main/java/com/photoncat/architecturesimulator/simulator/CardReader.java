@@ -0,0 +1,145 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The card reader.<br>
+ *
+ * A card is read whole when inserted, so {@link History} can move back on it when cycles are undone.
+ * @author Xu Ke
+ *
+ */
+public class CardReader extends IODevice {
+	private byte[] card;
+	/**
+	 * Bytes of the card read so far.
+	 */
+	private int position = 0;
+	private short buffer = 0;
+	private boolean bufferValid = false;
+	private boolean cardToEnd = false;
+	public CardReader() {}
+	/**
+	 * Constructor. Copies where original is on its card. The card itself is never changed, so it is shared.
+	 * @param original
+	 */
+	public CardReader(CardReader original) {
+		card = original.card;
+		position = original.position;
+		buffer = original.buffer;
+		bufferValid = original.bufferValid;
+		cardToEnd = original.cardToEnd;
+	}
+	@Override
+	public short input() {
+		if (card == null)
+			return 0;
+		if (bufferValid)
+			return buffer;
+		if (cardToEnd)
+			return 0;
+		// Reads two bytes to form a short.
+		// Big endian, as Java.
+		if (position == card.length) {
+			cardToEnd = true;
+			return 0;
+		}
+		int higherBit = card[position++] & 0xFF;
+		int lowerBit = 0;
+		if (position == card.length)
+			cardToEnd = true;
+		else
+			lowerBit = card[position++] & 0xFF;
+		buffer = (short) ((higherBit << 8) | (lowerBit));
+		bufferValid = true;
+		return buffer;
+	}
+
+	@Override
+	public short status() {
+		if (card == null)
+			return 1;
+		if (cardToEnd)
+			return 1;
+		return 0;
+	}
+	
+	@Override
+	public void tick() {
+		bufferValid = false;
+	}
+	
+	/**
+	 * Inserts a card, reading it to its end. A card failing to read ends where it failed.
+	 * @param card
+	 */
+	public void insertCard(InputStream card) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] chunk = new byte[4096];
+		try {
+			for (int n = card.read(chunk); n != -1; n = card.read(chunk))
+				bytes.write(chunk, 0, n);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		this.card = bytes.toByteArray();
+		position = 0;
+		bufferValid = false;
+		cardToEnd = false;
+	}
+	
+	/**
+	 * Word: the position on the card from bit 18, the end flag at bit 17, the buffer valid flag at bit 16,
+	 * and the buffer.
+	 */
+	@Override
+	public int getStateWordCount() {
+		return 1;
+	}
+	@Override
+	public void getStateWords(long[] to, int offset) {
+		to[offset] = (long) position << 18 | (cardToEnd ? 1 << 17 : 0) | (bufferValid ? 1 << 16 : 0) | buffer & 0xFFFF;
+	}
+	@Override
+	public void setStateWord(int index, long value) {
+		position = (int) (value >>> 18);
+		cardToEnd = (value & 1 << 17) != 0;
+		bufferValid = (value & 1 << 16) != 0;
+		buffer = (short) value;
+	}
+	
+	/**
+	 * Saves the rest of the card.
+	 */
+	@Override
+	public void saveState(DataOutput out) throws IOException {
+		out.writeShort(buffer);
+		out.writeBoolean(bufferValid);
+		out.writeBoolean(cardToEnd);
+		if (card == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(card.length - position);
+		out.write(card, position, card.length - position);
+	}
+	
+	@Override
+	public void loadState(DataInput in) throws IOException {
+		buffer = in.readShort();
+		bufferValid = in.readBoolean();
+		cardToEnd = in.readBoolean();
+		position = 0;
+		int length = in.readInt();
+		if (length < 0) {
+			card = null;
+			return;
+		}
+		card = new byte[length];
+		in.readFully(card);
+	}
+}
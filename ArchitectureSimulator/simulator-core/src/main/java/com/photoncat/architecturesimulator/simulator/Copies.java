@@ -0,0 +1,63 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.photoncat.architecturesimulator.simulator.chips.Chip;
+
+/**
+ * Chips and cables of a machine being copied, each with its copy, so what is shared in the original is
+ * shared in the copy too: a cable on the ports of two chips, or an inner chip a chip set also keeps in a field.
+ * See {@link Machine#copy()}.
+ * @author Xu Ke
+ *
+ */
+public class Copies {
+	private final Map<Chip, Chip> chips;
+	private final Map<Cable, Cable> cables;
+	/**
+	 * Constructor.
+	 * @param expectedChips - Chips to be copied, inner ones included, so the maps need not grow.
+	 * @param expectedCables
+	 */
+	public Copies(int expectedChips, int expectedCables) {
+		chips = new IdentityHashMap<>(expectedChips);
+		cables = new IdentityHashMap<>(expectedCables);
+	}
+	/**
+	 * @return Number of chips copied so far.
+	 */
+	public int chipCount() {
+		return chips.size();
+	}
+	/**
+	 * @return Number of cables copied so far.
+	 */
+	public int cableCount() {
+		return cables.size();
+	}
+	/**
+	 * @param chip
+	 * @return The copy of chip, made by {@link Chip#copy(Copies)} the first time.
+	 */
+	public Chip of(Chip chip) {
+		Chip copy = chips.get(chip);
+		if (copy == null) {
+			copy = chip.copy(this);
+			chips.put(chip, copy);
+		}
+		return copy;
+	}
+	/**
+	 * @param cable
+	 * @return The copy of cable, made by {@link Cable#copy(Copies)} the first time.
+	 */
+	public Cable of(Cable cable) {
+		Cable copy = cables.get(cable);
+		if (copy == null) {
+			copy = cable.copy(this);
+			cables.put(cable, copy);
+		}
+		return copy;
+	}
+}
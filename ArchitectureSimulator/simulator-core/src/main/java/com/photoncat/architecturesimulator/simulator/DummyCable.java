@@ -37,5 +37,12 @@ public class DummyCable extends Cable {
 	public void putBit(int bitPos, boolean val) {
 		
 	}
+	/**
+	 * A dummy cable holds nothing, so copies share it.
+	 */
+	@Override
+	public Cable copy(Copies copies) {
+		return this;
+	}
 
 }
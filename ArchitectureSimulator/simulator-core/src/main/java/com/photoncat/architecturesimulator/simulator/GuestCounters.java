@@ -0,0 +1,254 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.photoncat.architecturesimulator.simulator.chips.ClockRegister;
+import com.photoncat.architecturesimulator.simulator.chips.ControlDefinition;
+import com.photoncat.architecturesimulator.simulator.chips.ControlUnit;
+
+/**
+ * Performance counters of the guest program, read from the control unit state at every cycle. See
+ * {@link Machine#startGuestCounters()}.<br>
+ *
+ * What a state does comes from its outputs in <i>controlDef.ini</i>, not from its name, except for the
+ * fetch/decode/execute split:
+ * <ul>
+ * <li>Cycles in each state, and in fetch (states named <i>FETCH_*</i>), decode (<i>DECODE</i>) and execute
+ * (the others, but for the reset, halt and invalid states).</li>
+ * <li>Instructions finished per opcode, counted when the control unit comes back to fetch or halts.</li>
+ * <li>Memory reads, states loading MBR from memory, and writes, states setting <i>memory_load</i>.</li>
+ * <li>Jumps taken and not, in states setting <i>PC_jump_sel</i> or <i>PC_MBR_jump_sel</i>, by the ALU
+ * <i>jump</i> output.</li>
+ * <li>CHK instructions, states setting <i>GPRF_take_IO_STAT</i>, and those finding the device not ready,
+ * the polls of IO wait loops.</li>
+ * </ul>
+ * @author Xu Ke
+ *
+ */
+public final class GuestCounters {
+	/**
+	 * Opcodes, the top 6 bits of an instruction.
+	 */
+	public static final int OPCODES = 64;
+	private static final int OPCODE_SHIFT = 10;
+
+	private final ControlUnit controlUnit;
+	private final ControlDefinition definition;
+	private final ClockRegister instructionRegister;
+	private final Cable jump;
+	private final Cable ioStatus;
+	private final int fetchState;
+	private final int haltState;
+	/**
+	 * What each state does.
+	 */
+	private final boolean[] fetch, decode, execute, memoryRead, memoryWrite, jumpDecision, ioCheck;
+
+	private final long[] stateCycles;
+	private final long[] retired = new long[OPCODES];
+	private long cycles = 0;
+	private long memoryReads = 0;
+	private long memoryWrites = 0;
+	private long jumpsTaken = 0;
+	private long jumpsNotTaken = 0;
+	private long checks = 0;
+	private long checksNotReady = 0;
+	/**
+	 * State of the previous cycle, -1 if none.
+	 */
+	private int previousState = -1;
+
+	/**
+	 * @param controlUnit
+	 * @param instructionRegister - IR, for opcodes.
+	 * @param jump - Jump output of the ALU, null if none.
+	 * @param ioStatus - Status output of the IO chip, null if none.
+	 */
+	GuestCounters(ControlUnit controlUnit, ClockRegister instructionRegister, Cable jump, Cable ioStatus) {
+		this.controlUnit = controlUnit;
+		this.instructionRegister = instructionRegister;
+		this.jump = jump;
+		this.ioStatus = ioStatus;
+		definition = controlUnit.getDefinition();
+		fetchState = definition.getStateIndex(Machine.FETCH_STATE_NAME);
+		haltState = definition.getStateIndex(Machine.HALT_STATE_NAME);
+		int count = definition.getStateCount();
+		stateCycles = new long[count];
+		fetch = new boolean[count];
+		decode = new boolean[count];
+		execute = new boolean[count];
+		memoryRead = new boolean[count];
+		memoryWrite = new boolean[count];
+		jumpDecision = new boolean[count];
+		ioCheck = new boolean[count];
+		for (int s = 0; s < count; ++s) {
+			String name = definition.getStateName(s);
+			fetch[s] = name.startsWith("FETCH");
+			decode[s] = name.equals("DECODE");
+			execute[s] = !fetch[s] && !decode[s] && s != haltState && s != definition.getDefaultState()
+					&& s != definition.getInvalidState();
+			memoryRead[s] = definition.setsOutput(s, "MBR_load") && !definition.setsOutput(s, "MBR_take_GPRF")
+					&& !definition.setsOutput(s, "MBR_take_IRF");
+			memoryWrite[s] = definition.setsOutput(s, "memory_load");
+			jumpDecision[s] = definition.setsOutput(s, "PC_jump_sel") || definition.setsOutput(s, "PC_MBR_jump_sel");
+			ioCheck[s] = definition.setsOutput(s, "GPRF_take_IO_STAT");
+		}
+	}
+	/**
+	 * Counts the cycle just run, from the state the control unit ticked into and the values settled in it.
+	 * Called at the end of the evaluate after each tick.
+	 */
+	void sample() {
+		int state = controlUnit.getState();
+		++cycles;
+		++stateCycles[state];
+		if (memoryRead[state])
+			++memoryReads;
+		if (memoryWrite[state])
+			++memoryWrites;
+		if (jumpDecision[state] && jump != null) {
+			if (jump.getBit(0))
+				++jumpsTaken;
+			else
+				++jumpsNotTaken;
+		}
+		if (ioCheck[state]) {
+			++checks;
+			if (ioStatus != null && ioStatus.toInteger() != 0)
+				++checksNotReady;
+		}
+		// IR still holds the instruction just finished.
+		if ((state == fetchState || state == haltState) && previousState != state && previousState != -1
+				&& previousState != fetchState && previousState != definition.getDefaultState())
+			++retired[(int) (instructionRegister.getValue() >> OPCODE_SHIFT) & (OPCODES - 1)];
+		previousState = state;
+	}
+	/**
+	 * Sets all counters back to 0.
+	 */
+	public void reset() {
+		Arrays.fill(stateCycles, 0);
+		Arrays.fill(retired, 0);
+		cycles = 0;
+		memoryReads = 0;
+		memoryWrites = 0;
+		jumpsTaken = 0;
+		jumpsNotTaken = 0;
+		checks = 0;
+		checksNotReady = 0;
+		previousState = -1;
+	}
+	public long getCycles() {
+		return cycles;
+	}
+	/**
+	 * @return Instructions finished, by opcode.
+	 */
+	public long[] getRetired() {
+		return retired.clone();
+	}
+	public long getInstructions() {
+		long total = 0;
+		for (long n : retired)
+			total += n;
+		return total;
+	}
+	/**
+	 * @param state - Name of a control unit state.
+	 * @return Cycles spent in it, 0 if there is no such state.
+	 */
+	public long getStateCycles(String state) {
+		int index = definition.getStateIndex(state);
+		return index < 0 ? 0 : stateCycles[index];
+	}
+	public long getFetchCycles() {
+		return sum(fetch);
+	}
+	public long getDecodeCycles() {
+		return sum(decode);
+	}
+	public long getExecuteCycles() {
+		return sum(execute);
+	}
+	public long getMemoryReads() {
+		return memoryReads;
+	}
+	public long getMemoryWrites() {
+		return memoryWrites;
+	}
+	public long getJumpsTaken() {
+		return jumpsTaken;
+	}
+	public long getJumpsNotTaken() {
+		return jumpsNotTaken;
+	}
+	/**
+	 * @return CHK instructions run.
+	 */
+	public long getChecks() {
+		return checks;
+	}
+	/**
+	 * @return CHK instructions finding their device not ready.
+	 */
+	public long getChecksNotReady() {
+		return checksNotReady;
+	}
+	private long sum(boolean[] states) {
+		long total = 0;
+		for (int s = 0; s < states.length; ++s)
+			if (states[s])
+				total += stateCycles[s];
+		return total;
+	}
+	/**
+	 * @return All counters, with cycles per state and instructions per opcode, the most first.
+	 */
+	public String report() {
+		StringBuilder sb = new StringBuilder();
+		long instructions = getInstructions();
+		sb.append(String.format("cycles %d, instructions %d, CPI %.2f%n", cycles, instructions,
+				instructions == 0 ? 0.0 : (double) cycles / instructions));
+		sb.append(String.format("fetch %s, decode %s, execute %s%n", share(getFetchCycles()), share(getDecodeCycles()),
+				share(getExecuteCycles())));
+		sb.append(String.format("memory reads %d, writes %d, %.2f accesses per instruction%n", memoryReads, memoryWrites,
+				instructions == 0 ? 0.0 : (double) (memoryReads + memoryWrites) / instructions));
+		sb.append(String.format("jumps taken %d, not taken %d%n", jumpsTaken, jumpsNotTaken));
+		sb.append(String.format("CHK %d, device not ready %d%n", checks, checksNotReady));
+		sb.append("cycles per state:\n");
+		for (final int s : sortedByCount(stateCycles))
+			sb.append(String.format("\t%-24s %d%n", definition.getStateName(s), stateCycles[s]));
+		sb.append("instructions per opcode:\n");
+		for (int opcode : sortedByCount(retired))
+			sb.append(String.format("\t%-24d %d%n", opcode, retired[opcode]));
+		return sb.toString();
+	}
+	private String share(long part) {
+		return String.format("%d (%.1f%%)", part, cycles == 0 ? 0.0 : part * 100.0 / cycles);
+	}
+	/**
+	 * @param counts
+	 * @return Indices of non zero counts, the largest first.
+	 */
+	private static List<Integer> sortedByCount(final long[] counts) {
+		List<Integer> indices = new ArrayList<>();
+		for (int i = 0; i < counts.length; ++i)
+			if (counts[i] != 0)
+				indices.add(i);
+		Collections.sort(indices, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(counts[b], counts[a]);
+			}
+		});
+		return indices;
+	}
+	@Override
+	public String toString() {
+		return report();
+	}
+}
@@ -0,0 +1,206 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.photoncat.architecturesimulator.simulator.chips.ClockRegister;
+import com.photoncat.architecturesimulator.simulator.chips.ControlUnit;
+import com.photoncat.architecturesimulator.simulator.chips.Memory;
+import com.photoncat.architecturesimulator.simulator.tools.Disassembler;
+
+/**
+ * A sampling profiler of the guest program: where guest time goes, by instruction address. See
+ * {@link Machine#startGuestProfiler(int)}.<br>
+ *
+ * Samples are kept in a histogram with one counter per address, so sampling costs an array increment. A
+ * sample goes to the instruction being run, the PC at its fetch: PC itself points past it, or to a jump
+ * target, during most of an instruction. With an interval of 0 every fetch is a sample, counting
+ * instructions run at each address; otherwise a sample is taken every interval cycles, weighting
+ * instructions by their cycles.<br>
+ *
+ * Loops are found by their backward jumps: a fetch at an address not above the one fetched before it.
+ * The target is where the loop starts, and the highest address jumping back to it where it ends. A call to
+ * a subroutine at a lower address looks the same, and is listed as a loop too.
+ * @author Xu Ke
+ *
+ */
+public final class GuestProfiler {
+	/**
+	 * A loop found by its backward jumps.
+	 */
+	public static final class Loop {
+		public final int start;
+		/**
+		 * Highest address jumping back to start.
+		 */
+		public final int end;
+		/**
+		 * Backward jumps to start.
+		 */
+		public final long iterations;
+		/**
+		 * Samples between start and end, both included.
+		 */
+		public final long samples;
+		private Loop(int start, int end, long iterations, long samples) {
+			this.start = start;
+			this.end = end;
+			this.iterations = iterations;
+			this.samples = samples;
+		}
+	}
+
+	private final ControlUnit controlUnit;
+	private final ClockRegister programCounter;
+	private final Memory memory;
+	private final int fetchState;
+	private final int interval;
+	private final long[] samples;
+	private final long[] backJumps;
+	private final int[] loopEnds;
+	private long total = 0;
+	private int countdown;
+	/**
+	 * Address of the instruction being run, -1 before the first fetch.
+	 */
+	private int current = -1;
+
+	/**
+	 * @param controlUnit
+	 * @param programCounter
+	 * @param memory - For the instructions in the report, null if none.
+	 * @param fetchState - State in which PC holds the address of the instruction fetched.
+	 * @param interval - Cycles between samples, 0 to sample every fetch.
+	 */
+	GuestProfiler(ControlUnit controlUnit, ClockRegister programCounter, Memory memory, int fetchState, int interval) {
+		this.controlUnit = controlUnit;
+		this.programCounter = programCounter;
+		this.memory = memory;
+		this.fetchState = fetchState;
+		this.interval = interval;
+		int addresses = 1 << programCounter.getPortWidth("output");
+		samples = new long[addresses];
+		backJumps = new long[addresses];
+		loopEnds = new int[addresses];
+		countdown = interval;
+	}
+	/**
+	 * Takes the sample of a cycle, if due. Called at every tick, before the chips tick.
+	 */
+	void sample() {
+		if (controlUnit.getState() == fetchState) {
+			int address = (int) programCounter.getValue() & (samples.length - 1);
+			if (address <= current) {
+				++backJumps[address];
+				if (current > loopEnds[address])
+					loopEnds[address] = current;
+			}
+			current = address;
+			if (interval == 0) {
+				++samples[address];
+				++total;
+			}
+		}
+		if (interval != 0 && current >= 0 && --countdown == 0) {
+			countdown = interval;
+			++samples[current];
+			++total;
+		}
+	}
+	/**
+	 * Sets all samples and loops back to 0.
+	 */
+	public void reset() {
+		Arrays.fill(samples, 0);
+		Arrays.fill(backJumps, 0);
+		Arrays.fill(loopEnds, 0);
+		total = 0;
+		countdown = interval;
+		current = -1;
+	}
+	/**
+	 * @return Cycles between samples, 0 if every fetch is sampled.
+	 */
+	public int getInterval() {
+		return interval;
+	}
+	public long getTotalSamples() {
+		return total;
+	}
+	/**
+	 * @return Samples by address.
+	 */
+	public long[] getHistogram() {
+		return samples.clone();
+	}
+	/**
+	 * @return Loops, the one with the most samples first.
+	 */
+	public List<Loop> getLoops() {
+		List<Loop> loops = new ArrayList<>();
+		for (int start = 0; start < backJumps.length; ++start) {
+			if (backJumps[start] == 0)
+				continue;
+			long inside = 0;
+			for (int a = start; a <= loopEnds[start]; ++a)
+				inside += samples[a];
+			loops.add(new Loop(start, loopEnds[start], backJumps[start], inside));
+		}
+		Collections.sort(loops, new Comparator<Loop>() {
+			@Override
+			public int compare(Loop a, Loop b) {
+				return Long.compare(b.samples, a.samples);
+			}
+		});
+		return loops;
+	}
+	/**
+	 * @param address
+	 * @return The instruction at the address, or an empty string if memory is unknown.
+	 */
+	private String instructionAt(int address) {
+		return memory == null ? "" : Disassembler.disassemble(memory.getValue(address));
+	}
+	/**
+	 * @param maxLines - Most addresses and loops to list.
+	 * @return A flat profile, addresses with the most samples first and their instructions, then the loops.
+	 */
+	public String report(int maxLines) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d samples, %s%n", total, interval == 0 ? "every fetch" : "every " + interval + " cycles"));
+		List<Integer> addresses = new ArrayList<>();
+		for (int a = 0; a < samples.length; ++a)
+			if (samples[a] != 0)
+				addresses.add(a);
+		Collections.sort(addresses, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(samples[b], samples[a]);
+			}
+		});
+		sb.append(String.format("%7s %10s %7s %7s  %s%n", "address", "samples", "%", "cum %", "instruction"));
+		long cumulative = 0;
+		for (int a : addresses.subList(0, Math.min(maxLines, addresses.size()))) {
+			cumulative += samples[a];
+			sb.append(String.format("%7d %10d %7.2f %7.2f  %s%n", a, samples[a], percent(samples[a]), percent(cumulative),
+					instructionAt(a)));
+		}
+		List<Loop> loops = getLoops();
+		sb.append(String.format("%d loops%n", loops.size()));
+		sb.append(String.format("%7s %7s %10s %10s %7s  %s%n", "start", "end", "iterations", "samples", "%", "instruction at start"));
+		for (Loop loop : loops.subList(0, Math.min(maxLines, loops.size())))
+			sb.append(String.format("%7d %7d %10d %10d %7.2f  %s%n", loop.start, loop.end, loop.iterations, loop.samples,
+					percent(loop.samples), instructionAt(loop.start)));
+		return sb.toString();
+	}
+	private double percent(long part) {
+		return total == 0 ? 0.0 : part * 100.0 / total;
+	}
+	@Override
+	public String toString() {
+		return report(20);
+	}
+}
@@ -0,0 +1,241 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.photoncat.architecturesimulator.simulator.chips.Chip;
+import com.photoncat.architecturesimulator.simulator.chips.Memory;
+
+/**
+ * Records what changes in a machine on each cycle, so cycles can be undone.<br>
+ *
+ * The state of a machine is seen as a row of {@link StateWords}. Before each tick, the words are compared
+ * with their copy from the last tick, and the old values of those that changed are recorded. Memory words are
+ * recorded by a {@link Memory.WriteObserver} as they are written.<br>
+ *
+ * Changes go to a ring buffer of fixed size kept in primitive arrays, so recording does not allocate.
+ * When it is full, the oldest cycles are forgotten.<br>
+ *
+ * IO devices are recorded through their state words, so keys read are put back, cards move back and
+ * characters printed are taken back, and running forward again reads and prints the same. Keys pressed and
+ * cards inserted meanwhile come from outside of the machine and are kept.
+ * @author Xu Ke
+ *
+ */
+public class History {
+	/**
+	 * Tells when to stop going back.
+	 */
+	public interface Condition {
+		boolean test(Machine machine);
+	}
+
+	private final Machine machine;
+	private final StateWords words;
+	private final Memory[] memories;
+	/**
+	 * The words as they were at the last look.
+	 */
+	private final long[] shadow;
+	private final long[] current;
+
+	/**
+	 * Changes ring. An index of 0 or more is a word number; a negative index is a memory word,
+	 * see {@link #memoryIndex(int, int)}. Values are the old ones.
+	 */
+	private final int[] changeIndex;
+	private final long[] changeValue;
+	private final int changeMask;
+	private long changeHead = 0;
+	private long changeTail = 0;
+	/**
+	 * Cycles ring. Each cycle is recorded by the position of its first change.
+	 */
+	private final long[] cycleStart;
+	private final int cycleMask;
+	private long cycleHead = 0;
+	private long cycleTail = 0;
+	/**
+	 * The cycle being recorded, which is not finished until the next tick.
+	 */
+	private long openStart = 0;
+	/**
+	 * If a tick happened in the open cycle. Changes before the first tick join the cycle of that tick.
+	 */
+	private boolean openTicked = false;
+	/**
+	 * If changes of the open cycle did not fit in the ring, so it cannot be undone.
+	 */
+	private boolean openTruncated = false;
+
+	/**
+	 * Constructor. Starts recording at once.
+	 * @param machine
+	 * @param cables - Cables holding values.
+	 * @param chips - All chips.
+	 * @param maxCycles - Most cycles to remember, rounded up to a power of 2.
+	 * @param maxChanges - Most changed words to remember, rounded up to a power of 2.
+	 */
+	History(Machine machine, Cable[] cables, Chip[] chips, int maxCycles, int maxChanges) {
+		this.machine = machine;
+		words = new StateWords(cables, chips);
+		List<Memory> memoryList = new ArrayList<>();
+		for (Chip chip : chips)
+			if (chip instanceof Memory)
+				memoryList.add((Memory) chip);
+		shadow = new long[words.size()];
+		current = new long[shadow.length];
+		int changes = Integer.highestOneBit(Math.max(2, maxChanges) - 1) << 1;
+		changeIndex = new int[changes];
+		changeValue = new long[changes];
+		changeMask = changes - 1;
+		int cycles = Integer.highestOneBit(Math.max(2, maxCycles) - 1) << 1;
+		cycleStart = new long[cycles];
+		cycleMask = cycles - 1;
+		memories = memoryList.toArray(new Memory[memoryList.size()]);
+		for (int i = 0; i < memories.length; ++i) {
+			final int memory = i;
+			memories[i].setWriteObserver(new Memory.WriteObserver() {
+				@Override
+				public void beforeWrite(int address, int oldValue, long oldWrittenAt) {
+					record(memoryIndex(memory, address), oldValue & 0xFFFF | oldWrittenAt << 16);
+				}
+			});
+		}
+		reset();
+	}
+	/**
+	 * Forgets everything recorded, and starts again from the machine as it is now.
+	 */
+	public void reset() {
+		words.read(shadow);
+		changeHead = changeTail = 0;
+		cycleHead = cycleTail = 0;
+		openStart = 0;
+		openTicked = false;
+		openTruncated = false;
+	}
+	/**
+	 * Stops recording.
+	 */
+	void stop() {
+		for (Memory memory : memories)
+			memory.setWriteObserver(null);
+	}
+	/**
+	 * @return Number of cycles that can be undone now.
+	 */
+	public int getCycles() {
+		return (int) (cycleHead - cycleTail) + (openTicked && !openTruncated ? 1 : 0);
+	}
+	/**
+	 * Called by the machine before each tick.
+	 */
+	void beforeTick() {
+		recordChangedWords();
+		if (openTicked)
+			closeCycle();
+		openTicked = true;
+	}
+	/**
+	 * Undoes cycles, newest first.
+	 * @param n - Cycles to undo.
+	 * @return Cycles undone. Less than n if history ran out.
+	 */
+	public int stepBack(int n) {
+		recordChangedWords();
+		if (openTruncated) {
+			// Part of the open cycle is lost, so nothing before it can be reached.
+			reset();
+			return 0;
+		}
+		int steps = 0;
+		// Changes made after the last tick are always undone, they are part of the last cycle.
+		undo(openStart);
+		if (openTicked)
+			steps++;
+		while (steps < n && cycleHead > cycleTail) {
+			--cycleHead;
+			undo(cycleStart[(int) cycleHead & cycleMask]);
+			steps++;
+		}
+		openStart = changeHead;
+		openTicked = false;
+		return steps;
+	}
+	/**
+	 * Undoes cycles until the condition holds or history runs out.
+	 * @param condition - Tested after each cycle undone.
+	 * @return Cycles undone.
+	 */
+	public int runBackTo(Condition condition) {
+		int steps = 0;
+		while (stepBack(1) == 1) {
+			steps++;
+			if (condition.test(machine))
+				break;
+		}
+		return steps;
+	}
+
+	private void closeCycle() {
+		if (openTruncated) {
+			changeTail = changeHead;
+			openTruncated = false;
+		} else {
+			if (cycleHead - cycleTail == cycleStart.length)
+				forgetOldestCycle();
+			cycleStart[(int) cycleHead & cycleMask] = openStart;
+			cycleHead++;
+		}
+		openStart = changeHead;
+	}
+	private void forgetOldestCycle() {
+		cycleTail++;
+		changeTail = cycleHead > cycleTail ? cycleStart[(int) cycleTail & cycleMask] : openStart;
+	}
+	private void record(int index, long oldValue) {
+		if (changeHead - changeTail == changeIndex.length) {
+			if (cycleHead > cycleTail) {
+				forgetOldestCycle();
+			} else {
+				openTruncated = true;
+				changeTail = changeHead;
+			}
+		}
+		changeIndex[(int) changeHead & changeMask] = index;
+		changeValue[(int) changeHead & changeMask] = oldValue;
+		changeHead++;
+	}
+	private void recordChangedWords() {
+		words.read(current);
+		for (int i = 0; i < current.length; ++i) {
+			if (current[i] != shadow[i]) {
+				record(i, shadow[i]);
+				shadow[i] = current[i];
+			}
+		}
+	}
+	/**
+	 * Puts back old values of changes, newest first, down to position from.
+	 * @param from
+	 */
+	private void undo(long from) {
+		while (changeHead > from) {
+			--changeHead;
+			int index = changeIndex[(int) changeHead & changeMask];
+			long value = changeValue[(int) changeHead & changeMask];
+			if (index >= 0) {
+				words.write(index, value);
+				shadow[index] = value;
+			} else {
+				int memory = (-1 - index) % memories.length;
+				int address = (-1 - index) / memories.length;
+				memories[memory].restoreWord(address, (int) (value & 0xFFFF), value >>> 16);
+			}
+		}
+	}
+	private int memoryIndex(int memory, int address) {
+		return -1 - (address * memories.length + memory);
+	}
+}
@@ -0,0 +1,62 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The IO device base.
+ * @author Xu Ke
+ *
+ */
+public abstract class IODevice {
+	/**
+	 * outputs a byte. If the device cannot output, just do nothing. 
+	 * @param word - the word to output
+	 */
+	public void output(short word) {}
+	/**
+	 * Inputs a byte. If the device cannot perform any input, just return 0. 
+	 * @return The byte.
+	 */
+	public short input() { return 0; }
+	/**
+	 * Checks the status. 
+	 * @return The status.
+	 */
+	public short status() { return 0; }
+	/**
+	 * Will be called on the tick this device is active. Just updates the buffer.
+	 */
+	public void tick() {}
+	/**
+	 * Gets the number of words of state that change while the machine runs, such as how far the input was
+	 * read, for {@link History} to undo. Devices without any have 0.
+	 * @return Number of words.
+	 */
+	public int getStateWordCount() { return 0; }
+	/**
+	 * Copies the state words.
+	 * @param to
+	 * @param offset - Where the first word goes.
+	 */
+	public void getStateWords(long[] to, int offset) {}
+	/**
+	 * Puts a state word back, as read by {@link #getStateWords(long[], int)}.
+	 * @param index
+	 * @param value
+	 */
+	public void setStateWord(int index, long value) {}
+	/**
+	 * Writes buffers inside the device. Devices without buffers write nothing.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void saveState(DataOutput out) throws IOException {}
+	/**
+	 * Reads buffers written by {@link #saveState(DataOutput)}.
+	 * @param in
+	 * @throws IOException
+	 */
+	public void loadState(DataInput in) throws IOException {}
+}
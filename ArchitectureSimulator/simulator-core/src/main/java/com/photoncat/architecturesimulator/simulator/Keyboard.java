@@ -0,0 +1,116 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.LinkedList;
+
+/**
+ * The console keyboard.<br>
+ *
+ * Keys read are kept for a while, so {@link History} can put them back when cycles are undone.
+ * @author Xu Ke
+ *
+ */
+public class Keyboard extends IODevice {
+	/**
+	 * Most keys read kept for undoing.
+	 */
+	private static final int MAX_TAKEN = 4096;
+	private LinkedList<Short> buffer;
+	/**
+	 * Keys read, the newest last.
+	 */
+	private LinkedList<Short> taken;
+	/**
+	 * Keys read so far.
+	 */
+	private long takenCount = 0;
+	
+	public Keyboard() {
+		buffer = new LinkedList<>();
+		taken = new LinkedList<>();
+	}
+	/**
+	 * Constructor. Copies the keys waiting and read of original.
+	 * @param original
+	 */
+	public Keyboard(Keyboard original) {
+		synchronized(original) {
+			buffer = new LinkedList<>(original.buffer);
+			taken = new LinkedList<>(original.taken);
+			takenCount = original.takenCount;
+		}
+	}
+	@Override
+	public short input() {
+		synchronized(this) {
+			if (buffer.isEmpty())
+				return 0;
+			return buffer.element();
+		}
+	}
+	
+	public void pressKey(short key) {
+		synchronized(this) {
+			buffer.add(key);
+		}
+	}
+	
+	@Override
+	public void tick() {
+		synchronized(this) {
+			if (!buffer.isEmpty()) {
+				taken.add(buffer.remove());
+				if (taken.size() > MAX_TAKEN)
+					taken.removeFirst();
+				takenCount++;
+			}
+		}
+	}
+	
+	/**
+	 * Word: the keys read so far. Setting it lower puts keys read back in front of the buffer.
+	 */
+	@Override
+	public int getStateWordCount() {
+		return 1;
+	}
+	@Override
+	public void getStateWords(long[] to, int offset) {
+		synchronized(this) {
+			to[offset] = takenCount;
+		}
+	}
+	@Override
+	public void setStateWord(int index, long value) {
+		synchronized(this) {
+			while (takenCount > value && !taken.isEmpty()) {
+				buffer.addFirst(taken.removeLast());
+				takenCount--;
+			}
+			takenCount = value;
+		}
+	}
+	
+	@Override
+	public void saveState(DataOutput out) throws IOException {
+		synchronized(this) {
+			out.writeInt(buffer.size());
+			for (short key : buffer)
+				out.writeShort(key);
+			out.writeLong(takenCount);
+		}
+	}
+	
+	@Override
+	public void loadState(DataInput in) throws IOException {
+		synchronized(this) {
+			buffer.clear();
+			for (int i = in.readInt(); i > 0; --i)
+				buffer.add(in.readShort());
+			taken.clear();
+			takenCount = in.readLong();
+		}
+	}
+}
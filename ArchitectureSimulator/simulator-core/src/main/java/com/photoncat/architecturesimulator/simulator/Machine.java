@@ -0,0 +1,893 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.photoncat.architecturesimulator.simulator.chips.Chip;
+import com.photoncat.architecturesimulator.simulator.chips.ChipFactory;
+import com.photoncat.architecturesimulator.simulator.chips.ChipMetrics;
+import com.photoncat.architecturesimulator.simulator.chips.ClockRegister;
+import com.photoncat.architecturesimulator.simulator.chips.ControlCoverage;
+import com.photoncat.architecturesimulator.simulator.chips.ControlDefinition;
+import com.photoncat.architecturesimulator.simulator.chips.ControlUnit;
+import com.photoncat.architecturesimulator.simulator.chips.IODevices;
+import com.photoncat.architecturesimulator.simulator.chips.Memory;
+import com.photoncat.architecturesimulator.simulator.chips.RegisterFile;
+import com.photoncat.architecturesimulator.simulator.tools.AssemblyCompiler;
+import com.photoncat.architecturesimulator.simulator.tools.AssemblyCompiler.CompiledProgram;
+import com.photoncat.architecturesimulator.simulator.util.ConfigurationCache;
+import com.photoncat.architecturesimulator.simulator.util.ResourceLoader;
+
+import static com.photoncat.architecturesimulator.simulator.util.ExceptionHandling.panic;
+
+/**
+ * A simulated machine.
+ * @author Xu Ke
+ *
+ */
+public class Machine {
+	private Keyboard keyboard;
+	private Printer printer;
+	private CardReader reader;
+	/**
+	 * Prefix of all front panel chips in <i>chipsDef.ini</i>.
+	 */
+	public static final String PANEL_PREFIX = "panel";
+	/**
+	 * Constructor. Makes a machine with its front panel.
+	 */
+	public Machine() {
+		this(false);
+	}
+	/**
+	 * Constructor.
+	 * @param headless - If true, front panel chips (named with {@link #PANEL_PREFIX}) are left out of tick and
+	 * evaluate. Their outputs stay at 0, just like a panel nobody touches, and their inputs are never read.
+	 */
+	public Machine(boolean headless) {
+		try {
+			loadFile();
+		} catch (IOException e) {
+			System.err.println("Configuration file not found.");
+			System.exit(-1);
+		} catch (IllegalStateException e) {
+			System.err.println("Configuration file format error:");
+			System.err.println(e.getMessage());
+			System.exit(-1);
+		}
+		setUp(headless);
+	}
+	/**
+	 * Constructor. Makes a copy of original, see {@link #copy()}.
+	 * @param original
+	 */
+	private Machine(Machine original) {
+		netlist = original.netlist;
+		Copies copies = new Copies(original.copiedChips, original.copiedCables);
+		// In netlist order, as the chips map was filled, so both iterate alike.
+		for (Netlist.ChipDefinition chip : netlist.getChips())
+			chips.put(chip.name, copies.of(original.getChip(chip.name)));
+		for (Map.Entry<String, Cable> e : original.cables.entrySet())
+			cables.put(e.getKey(), copies.of(e.getValue()));
+		headless = original.headless;
+		keyboard = new Keyboard(original.keyboard);
+		printer = new Printer(original.printer);
+		reader = new CardReader(original.reader);
+		connectDevices();
+		findControlChips();
+		makeSchedule(headless);
+		// In the original's order, so snapshots of either restore into the other.
+		stateCables = new SingleCable[original.stateCables.length];
+		for (int i = 0; i < stateCables.length; ++i)
+			stateCables[i] = (SingleCable) copies.of(original.stateCables[i]);
+		breakpoints = (BitSet) original.breakpoints.clone();
+		original.copiedChips = copiedChips = copies.chipCount();
+		original.copiedCables = copiedCables = copies.cableCount();
+	}
+	/**
+	 * Makes an independent machine with the same chips and the same state, including breakpoints.<br>
+	 * Nothing is parsed, made by {@link ChipFactory} or wired from the netlist: every chip is cloned with its
+	 * state arrays by {@link Chip#copy(Copies)}, chip sets clone their inner chips, and ports and adapters are
+	 * put on the copies of their cables. What never changes once wired, such as ports formats and the
+	 * definitions, is shared. A copy costs about a tenth of the constructor and IPL, see
+	 * {@link com.photoncat.architecturesimulator.simulator.testing.CopyBenchmark}.<br>
+	 * History, baseline, observer, printer listener, guest counters, profiler and control coverage are not copied.
+	 * @return The copy.
+	 */
+	public Machine copy() {
+		return new Machine(this);
+	}
+	/**
+	 * Constructor. Makes a machine with its front panel from a chips definition in <i>chipsDef.ini</i> format.
+	 * @param chipsDefinition
+	 * @throws IOException When reading the definition failed.
+	 */
+	public Machine(Reader chipsDefinition) throws IOException {
+		this(chipsDefinition, false);
+	}
+	/**
+	 * Constructor. Makes a machine from a chips definition in <i>chipsDef.ini</i> format.
+	 * The definition is parsed every time, without {@link ConfigurationCache}.
+	 * @param chipsDefinition
+	 * @param headless - See {@link #Machine(boolean)}.
+	 * @throws IOException When reading the definition failed.
+	 */
+	public Machine(Reader chipsDefinition, boolean headless) throws IOException {
+		build(Netlist.parse(chipsDefinition));
+		setUp(headless);
+	}
+	/**
+	 * Connects IO devices and makes the schedule. Chips named <i>IO</i> and <i>IRF</i> are optional,
+	 * so a machine can be made of any netlist.
+	 * @param headless
+	 */
+	private void setUp(boolean headless) {
+		this.headless = headless;
+		keyboard = new Keyboard();
+		printer = new Printer();
+		reader = new CardReader();
+		connectDevices();
+		Chip irf = getChip("IRF");
+		if (irf instanceof RegisterFile)
+			((RegisterFile)irf).setValue(0, 0);
+		findControlChips();
+		makeSchedule(headless);
+		collectStateCables();
+	}
+	/**
+	 * Connects keyboard, printer and card reader to the chip named <i>IO</i>, if there is one.
+	 */
+	private void connectDevices() {
+		Chip io = getChip("IO");
+		if (io instanceof IODevices) {
+			((IODevices)io).connectDevice(0, keyboard);
+			((IODevices)io).connectDevice(1, printer);
+			((IODevices)io).connectDevice(2, reader);
+		}
+	}
+	/**
+	 * Finds the chips and control unit states {@link #run(long)} watches.
+	 */
+	private void findControlChips() {
+		Chip cu = getChip("CU");
+		if (cu instanceof ControlUnit) {
+			controlUnit = (ControlUnit) cu;
+			ControlDefinition definition = controlUnit.getDefinition();
+			haltState = definition.getStateIndex(HALT_STATE_NAME);
+			invalidState = definition.getInvalidState();
+			fetchState = definition.getStateIndex(FETCH_STATE_NAME);
+			initialState = definition.getDefaultState();
+		}
+		Chip pc = getChip("PC");
+		if (pc instanceof ClockRegister)
+			programCounter = (ClockRegister) pc;
+	}
+	/**
+	 * Load a testing program by MAGIC!
+	 */ 
+	public void IPLMagic() {
+		Memory mem = (Memory) getChip("memory");
+		
+		// SIMULATED Boot Loader: 
+		// It loads a testing program into the memory address 0x10, and sets PC to
+		// 0x10.
+		((ClockRegister)getChip("PC")).setValue(1025);
+		CompiledProgram code = null;
+		try {
+			code = AssemblyCompiler.compile(new BufferedReader(new InputStreamReader(ResourceLoader.getDefault().open("conf/IPL Program.prg"))));
+			mem.loadProgram(1025, code);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Loads <i>conf/chipsDef.ini</i> through the default {@link ResourceLoader}.
+	 * The parsed file is cached by {@link ConfigurationCache}, so only the first start parses it.
+	 * @throws IOException When load file failed.
+	 */
+	private void loadFile() throws IOException {
+		build(ConfigurationCache.load("chipsDef", ResourceLoader.getDefault().open("conf/chipsDef.ini"), Netlist.CODEC));
+	}
+	/**
+	 * Makes and wires all chips of a netlist.
+	 * @param netlist
+	 */
+	private void build(Netlist netlist) {
+		this.netlist = netlist;
+		for (Netlist.ChipDefinition chip : netlist.getChips())
+			chips.put(chip.name, ChipFactory.makeChip(chip.type, chip.getParams()));
+		for (Netlist.CableDefinition cable : netlist.getCables())
+			buildCable(cable);
+	}
+	private void buildCable(Netlist.CableDefinition definition) {
+		Netlist.PortReference chipPortDef = definition.ports.get(0);
+		if (chipPortDef.isPartial()) {
+			// handle partial in first element.
+		}
+		Cable workingCable = new SingleCable(getChip(chipPortDef.chip).getPortWidth(chipPortDef.port));
+		getChip(chipPortDef.chip).connectPort(chipPortDef.port, workingCable);
+		for (int i = 1; i < definition.ports.size(); ++i) {
+			chipPortDef = definition.ports.get(i);
+			// check if it's a definition containing [.
+			if (!chipPortDef.isPartial()) {
+				if (getChip(chipPortDef.chip).getPortWidth(chipPortDef.port) == workingCable.getWidth())
+					getChip(chipPortDef.chip).connectPort(chipPortDef.port, workingCable);
+				else {
+					Cable adapter = new CableAdapter(getChip(chipPortDef.chip).getPortWidth(chipPortDef.port), workingCable);
+					getChip(chipPortDef.chip).connectPort(chipPortDef.port, adapter);
+				}
+			} else {
+				int width = chipPortDef.end - chipPortDef.start + 1;
+				Cable adapter;
+				if (chipPortDef.offset < 0)
+					adapter = new CablePartialAdapter(width, workingCable);
+				else
+					adapter = new CablePartialAdapter(width, workingCable, chipPortDef.offset);
+				if (width != workingCable.getWidth()) {
+					// Need a new adapter for chip.
+					Cable adapter2 = new CablePartialAdapter(getChip(chipPortDef.chip).getPortWidth(chipPortDef.port), adapter, - chipPortDef.start);
+					getChip(chipPortDef.chip).connectPort(chipPortDef.port, adapter2);
+				} else {
+					getChip(chipPortDef.chip).connectPort(chipPortDef.port, adapter);
+				}
+			}
+		}
+		if (definition.name != null)
+			cables.put(definition.name, workingCable);
+	}
+	
+	/**
+	 * Makes the list of chips to tick and evaluate.<br>
+	 * It keeps the order of the chips map, since IO devices read their input during evaluate and so the
+	 * evaluation order can be seen by guest programs.
+	 * @param headless - Leaves panel chips out.
+	 */
+	private void makeSchedule(boolean headless) {
+		List<Chip> list = new ArrayList<>();
+		if (ChipMetrics.ENABLED)
+			metrics = new ChipMetrics();
+		List<Integer> slots = new ArrayList<>();
+		for (Map.Entry<String, Chip> e : chips.entrySet()) {
+			if (headless && e.getKey().startsWith(PANEL_PREFIX))
+				continue;
+			list.add(e.getValue());
+			if (metrics != null)
+				slots.add(metrics.add(e.getKey(), e.getValue()));
+		}
+		schedule = list.toArray(new Chip[list.size()]);
+		if (metrics != null) {
+			scheduleSlots = new int[slots.size()];
+			for (int i = 0; i < scheduleSlots.length; ++i)
+				scheduleSlots[i] = slots.get(i);
+		}
+	}
+	
+	private Map<String, Chip> chips = new HashMap<>();
+	/**
+	 * Chips and cables the last copy of this machine, or the one it is a copy of, had to copy. Copies are
+	 * made with room for these many.
+	 */
+	private int copiedChips = 256;
+	private int copiedCables = 1024;
+	/**
+	 * The definition this machine was made from.
+	 */
+	private Netlist netlist;
+	private boolean headless;
+	/**
+	 * Chips to tick and evaluate.
+	 */
+	private Chip[] schedule;
+	/**
+	 * Counts of all chips, and the slot of each chip of the schedule in it. Null unless {@link ChipMetrics#ENABLED}.
+	 */
+	private ChipMetrics metrics;
+	private int[] scheduleSlots;
+	/**
+	 * Default most passes of an evaluate. The shipped design settles in a few; a design needing more than
+	 * this almost surely oscillates.
+	 */
+	public static final int DEFAULT_SETTLE_PASS_LIMIT = 10000;
+	/**
+	 * Passes run after hitting the limit, to find the chips changing. Oscillations are usually shorter.
+	 */
+	private static final int UNSETTLED_DIAGNOSTIC_PASSES = 8;
+	private int settlePassLimit = DEFAULT_SETTLE_PASS_LIMIT;
+	private final SettleStatistics settleStatistics = new SettleStatistics();
+	/**
+	 * See {@link #getUnsettledChips()}.
+	 */
+	private List<String> unsettledChips;
+	/**
+	 * Told of cycles, passes, IO and control unit states, null if none.
+	 */
+	private MachineObserver observer;
+	/**
+	 * Cycles ticked since the machine was made.
+	 */
+	private long cycle = 0;
+	/**
+	 * Counts what the guest program does, null when not counting.
+	 */
+	private GuestCounters guestCounters;
+	/**
+	 * If a tick is to be counted by the guest counters by the next evaluate.
+	 */
+	private boolean guestCyclePending = false;
+	/**
+	 * Samples guest instruction addresses, null when not profiling.
+	 */
+	private GuestProfiler guestProfiler;
+	private Map<String, Cable> cables = new HashMap<>();
+	/**
+	 * Name of the control unit state that stops the machine.
+	 */
+	public static final String HALT_STATE_NAME = "HALT";
+	/**
+	 * Name of the control unit state starting an instruction fetch. PC holds the instruction address then.
+	 */
+	public static final String FETCH_STATE_NAME = "FETCH_PC_TO_MAR";
+	/**
+	 * Chips {@link #run(long)} watches. Null if the netlist has none.
+	 */
+	private ControlUnit controlUnit;
+	private ClockRegister programCounter;
+	/**
+	 * State numbers of the control unit, -1 if there is no such state.
+	 */
+	private int haltState = -1;
+	private int invalidState = -1;
+	private int fetchState = -1;
+	private int initialState = -1;
+	/**
+	 * Cables holding values, in the order snapshots save them.
+	 */
+	private SingleCable[] stateCables;
+	private static final int SNAPSHOT_MAGIC = 0x534e4150;
+	/**
+	 * Records cycles to undo, null when not recording.
+	 */
+	private History history;
+	/**
+	 * Default size of history: cycles, and changed words in all of them.
+	 */
+	public static final int DEFAULT_HISTORY_CYCLES = 8192;
+	public static final int DEFAULT_HISTORY_CHANGES = 1 << 18;
+	/**
+	 * State to go back to by {@link #resetToBaseline()}, null if none was marked.
+	 */
+	private Baseline baseline;
+	/**
+	 * Instruction addresses to stop at.
+	 */
+	private BitSet breakpoints = new BitSet();
+	public Chip getChip(String name) {
+		return chips.get(name);
+	}
+	public Cable getCable(String name) {
+		return cables.get(name);
+	}
+	/**
+	 * Tick each chip.
+	 */
+	public void tick(){
+		if (history != null)
+			history.beforeTick();
+		++cycle;
+		if (observer != null)
+			observer.cycleStarted(cycle);
+		guestCyclePending = guestCounters != null;
+		if (guestProfiler != null)
+			guestProfiler.sample();
+		if (ChipMetrics.ENABLED && metrics != null) {
+			for (int i = 0; i < schedule.length; ++i) {
+				long start = System.nanoTime();
+				schedule[i].tick();
+				metrics.ticked(scheduleSlots[i], System.nanoTime() - start);
+			}
+			return;
+		}
+		for (Chip c : schedule) {
+			c.tick();
+		}
+	}
+	/**
+	 * Evaluates until all values are stabilized, or until the settle pass limit. A machine not settled then
+	 * keeps the names of the chips still changing, see {@link #getUnsettledChips()}. Either way, guest
+	 * counters count the cycle, as {@link #run(long)} does.
+	 */
+	public void evaluate(){
+		int passes = 0;
+		boolean change = true;
+		unsettledChips = null;
+		while (change) {
+			if (passes == settlePassLimit) {
+				unsettledChips = findUnsettledChips();
+				break;
+			}
+			++passes;
+			if (observer != null)
+				observer.passStarted(cycle, passes);
+			change = ChipMetrics.ENABLED && metrics != null ? evaluatePassMeasured() : evaluatePass();
+			if (observer != null)
+				observer.passEnded(cycle, passes, change);
+		}
+		settleStatistics.record(passes);
+		if (observer != null)
+			observer.settled(cycle, passes);
+		if (guestCyclePending) {
+			guestCyclePending = false;
+			guestCounters.sample();
+		}
+	}
+	/**
+	 * Evaluates every chip once.
+	 * @return If any chip changed.
+	 */
+	private boolean evaluatePass() {
+		boolean change = false;
+		for (Chip c : schedule) {
+			if (c.evaluate())
+				change = true;
+		}
+		return change;
+	}
+	/**
+	 * {@link #evaluatePass()}, timing each chip.
+	 */
+	private boolean evaluatePassMeasured() {
+		boolean change = false;
+		for (int i = 0; i < schedule.length; ++i) {
+			long start = System.nanoTime();
+			boolean changed = schedule[i].evaluate();
+			metrics.evaluated(scheduleSlots[i], changed, System.nanoTime() - start);
+			if (changed)
+				change = true;
+		}
+		return change;
+	}
+	/**
+	 * Runs a few more passes, noting which chips change.
+	 * @return Names of the chips changing, in schedule order.
+	 */
+	private List<String> findUnsettledChips() {
+		Map<Chip, String> names = new IdentityHashMap<>();
+		for (Map.Entry<String, Chip> e : chips.entrySet())
+			names.put(e.getValue(), e.getKey());
+		LinkedHashSet<String> changing = new LinkedHashSet<>();
+		for (int pass = 0; pass < UNSETTLED_DIAGNOSTIC_PASSES; ++pass)
+			for (Chip c : schedule)
+				if (c.evaluate())
+					changing.add(names.get(c));
+		return Collections.unmodifiableList(new ArrayList<>(changing));
+	}
+	/**
+	 * Sets who is told what happens inside cycles: cycles, passes of evaluate, IO accesses and control unit
+	 * states. With none set, which is the default, each hook costs a null check.
+	 * @param observer - Null for none.
+	 */
+	public void setObserver(MachineObserver observer) {
+		this.observer = observer;
+		Chip io = getChip("IO");
+		if (io instanceof IODevices)
+			((IODevices) io).setObserver(observer);
+		if (controlUnit != null)
+			controlUnit.setObserver(observer);
+	}
+	/**
+	 * Starts counting what the guest program does: cycles per state, instructions per opcode, memory accesses,
+	 * jumps and IO polls. Anything counted before is forgotten. A cycle is counted by the evaluate after its
+	 * tick, when it settles or hits the settle pass limit, so the counts agree with {@link #run(long)}. See
+	 * {@link GuestCounters}.
+	 * @throws IllegalStateException When the netlist has no control unit or no IR.
+	 */
+	public void startGuestCounters() {
+		Chip ir = getChip("IR");
+		if (controlUnit == null || !(ir instanceof ClockRegister))
+			panic("Guest counters need the chips CU and IR.");
+		Chip alu = getChip("ALU");
+		Chip io = getChip("IO");
+		guestCounters = new GuestCounters(controlUnit, (ClockRegister) ir, alu == null ? null : alu.getPort("jump"),
+				io == null ? null : io.getPort("status"));
+		guestCyclePending = false;
+	}
+	public void stopGuestCounters() {
+		guestCounters = null;
+		guestCyclePending = false;
+	}
+	/**
+	 * @return The counters being kept, or null.
+	 */
+	public GuestCounters getGuestCounters() {
+		return guestCounters;
+	}
+	/**
+	 * Starts sampling where the guest program spends its time. Anything sampled before is forgotten. See
+	 * {@link GuestProfiler}.
+	 * @param interval - Cycles between samples, 0 to sample every instruction fetch.
+	 * @throws IllegalStateException When the netlist has no control unit, fetch state or PC.
+	 */
+	public void startGuestProfiler(int interval) {
+		if (interval < 0)
+			throw new IllegalArgumentException("Sampling interval must not be negative: " + interval);
+		if (controlUnit == null || fetchState < 0 || programCounter == null)
+			panic("Profiling needs the chips CU and PC, and a " + FETCH_STATE_NAME + " state.");
+		Chip memory = getChip("memory");
+		guestProfiler = new GuestProfiler(controlUnit, programCounter, memory instanceof Memory ? (Memory) memory : null,
+				fetchState, interval);
+	}
+	public void stopGuestProfiler() {
+		guestProfiler = null;
+	}
+	/**
+	 * @return The profiler sampling, or null.
+	 */
+	public GuestProfiler getGuestProfiler() {
+		return guestProfiler;
+	}
+	/**
+	 * Records the control unit states and transitions of every cycle into coverage. See {@link ControlCoverage}.
+	 * @param coverage - Of the definition of this machine's control unit, null to stop.
+	 * @throws IllegalStateException When coverage is given and the netlist has no control unit.
+	 */
+	public void setControlCoverage(ControlCoverage coverage) {
+		if (controlUnit != null)
+			controlUnit.setCoverage(coverage);
+		else if (coverage != null)
+			panic("Control coverage needs the chip CU.");
+	}
+	/**
+	 * @return A new, empty coverage of this machine's control unit definition, null if there is no control unit.
+	 */
+	public ControlCoverage newControlCoverage() {
+		return controlUnit == null ? null : new ControlCoverage(controlUnit.getDefinition());
+	}
+	/**
+	 * @return Cycles ticked since the machine was made.
+	 */
+	public long getCycle() {
+		return cycle;
+	}
+	/**
+	 * @return Passes evaluate took to settle, since the machine was made or the statistics reset.
+	 */
+	public SettleStatistics getSettleStatistics() {
+		return settleStatistics;
+	}
+	/**
+	 * Sets the most passes an evaluate runs. A design that oscillates stops there instead of hanging.
+	 * @param limit - At least 1, {@link Integer#MAX_VALUE} for no limit.
+	 */
+	public void setSettlePassLimit(int limit) {
+		if (limit < 1)
+			throw new IllegalArgumentException("Settle pass limit must be at least 1: " + limit);
+		settlePassLimit = limit;
+	}
+	public int getSettlePassLimit() {
+		return settlePassLimit;
+	}
+	/**
+	 * @return Names of the chips that kept changing when the last evaluate hit the settle pass limit, null if
+	 * it settled.
+	 */
+	public List<String> getUnsettledChips() {
+		return unsettledChips;
+	}
+	/**
+	 * @return Calls, changes and time of tick and evaluate of every chip, null unless {@link ChipMetrics#ENABLED}.
+	 */
+	public ChipMetrics getChipMetrics() {
+		return metrics;
+	}
+	/**
+	 * Runs tick and evaluate in a loop, without anything else in between.
+	 * @param maxCycles - Most cycles to execute.
+	 * @return What the run did. Check {@link RunResult#reason} for why it stopped.
+	 */
+	public RunResult run(long maxCycles) {
+		long start = System.nanoTime();
+		long cycles = 0;
+		long instructions = 0;
+		boolean between = isBetweenInstructions();
+		// A run starting on a breakpoint leaves it, but a halted machine stays halted.
+		RunResult.StopReason reason = stopReason(false);
+		while (reason == null && cycles < maxCycles) {
+			tick();
+			evaluate();
+			++cycles;
+			if (unsettledChips != null) {
+				reason = RunResult.StopReason.NOT_SETTLED;
+				break;
+			}
+			// An instruction finishes when the control unit comes back to fetch, or halts.
+			boolean nowBetween = isBetweenInstructions();
+			if (nowBetween && !between)
+				++instructions;
+			between = nowBetween;
+			reason = stopReason(true);
+		}
+		if (reason == null)
+			reason = RunResult.StopReason.CYCLE_BUDGET;
+		return new RunResult(cycles, instructions, reason, System.nanoTime() - start);
+	}
+	/**
+	 * Runs until the machine halts, meets an invalid instruction or a breakpoint.
+	 * @return What the run did.
+	 */
+	public RunResult runUntilHalt() {
+		return run(Long.MAX_VALUE);
+	}
+	/**
+	 * @return If the control unit is at fetch, halted or reset, so no instruction is half done.
+	 */
+	private boolean isBetweenInstructions() {
+		if (controlUnit == null)
+			return false;
+		int state = controlUnit.getState();
+		return state == fetchState || state == haltState || state == initialState;
+	}
+	/**
+	 * @param checkBreakpoints
+	 * @return Why a run should stop now, null if it should go on.
+	 */
+	private RunResult.StopReason stopReason(boolean checkBreakpoints) {
+		if (controlUnit == null)
+			return null;
+		int state = controlUnit.getState();
+		if (state == haltState)
+			return RunResult.StopReason.HALT;
+		if (state == invalidState)
+			return RunResult.StopReason.INVALID_INSTRUCTION;
+		if (checkBreakpoints && state == fetchState && programCounter != null && !breakpoints.isEmpty()
+				&& breakpoints.get((int) programCounter.getValue()))
+			return RunResult.StopReason.BREAKPOINT;
+		return null;
+	}
+	/**
+	 * Stops {@link #run(long)} before the instruction at address is fetched.
+	 * @param address
+	 */
+	public void addBreakpoint(int address) {
+		breakpoints.set(address);
+	}
+	public void removeBreakpoint(int address) {
+		breakpoints.clear(address);
+	}
+	public void clearBreakpoints() {
+		breakpoints.clear();
+	}
+	/**
+	 * Lists the cables holding values, so snapshots can save them. Adapters only show other cables.
+	 */
+	private void collectStateCables() {
+		LinkedHashSet<Cable> all = new LinkedHashSet<>();
+		for (Chip c : chips.values())
+			c.collectCables(all);
+		List<SingleCable> list = new ArrayList<>();
+		for (Cable c : all)
+			if (c instanceof SingleCable)
+				list.add((SingleCable) c);
+		stateCables = list.toArray(new SingleCable[list.size()]);
+	}
+	/**
+	 * Takes a snapshot of everything inside the machine: registers, memory and its cache, the control unit,
+	 * switches, IO device buffers and the values on all cables.
+	 * @return The snapshot. It can only be restored into a machine made from the same chips definition.
+	 */
+	public byte[] snapshot() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(16384);
+		try {
+			snapshot(new DataOutputStream(bytes));
+		} catch (IOException e) {
+			// Never happens for byte arrays.
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+	/**
+	 * Writes a snapshot.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void snapshot(DataOutput out) throws IOException {
+		out.writeInt(SNAPSHOT_MAGIC);
+		out.writeInt(chips.size());
+		out.writeInt(stateCables.length);
+		for (SingleCable cable : stateCables)
+			writeCable(out, cable);
+		for (Chip c : chips.values())
+			c.saveState(out);
+	}
+	/**
+	 * Writes a snapshot to a channel, such as a {@link java.nio.channels.FileChannel}, with its length in front,
+	 * so more can be written after it.
+	 * @param channel
+	 * @throws IOException
+	 */
+	public void snapshot(WritableByteChannel channel) throws IOException {
+		byte[] bytes = snapshot();
+		ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.length);
+		buffer.putInt(bytes.length).put(bytes).flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+	/**
+	 * Puts the machine back to a snapshot.
+	 * @param snapshot - Taken by {@link #snapshot()}.
+	 * @throws IllegalStateException When the snapshot was taken from another kind of machine.
+	 */
+	public void restore(byte[] snapshot) {
+		try {
+			restore(new DataInputStream(new ByteArrayInputStream(snapshot)));
+		} catch (IOException e) {
+			panic("Broken snapshot: " + e.getMessage());
+		}
+	}
+	/**
+	 * Reads a snapshot.
+	 * @param in
+	 * @throws IOException
+	 * @throws IllegalStateException When the snapshot was taken from another kind of machine.
+	 */
+	public void restore(DataInput in) throws IOException {
+		if (in.readInt() != SNAPSHOT_MAGIC)
+			panic("Not a machine snapshot.");
+		if (in.readInt() != chips.size() || in.readInt() != stateCables.length)
+			panic("Snapshot was taken from a machine with different chips.");
+		for (SingleCable cable : stateCables)
+			readCable(in, cable);
+		for (Chip c : chips.values())
+			c.loadState(in);
+		if (history != null)
+			history.reset();
+	}
+	/**
+	 * Reads a snapshot written by {@link #snapshot(WritableByteChannel)}.
+	 * @param channel
+	 * @throws IOException
+	 */
+	public void restore(ReadableByteChannel channel) throws IOException {
+		ByteBuffer length = ByteBuffer.allocate(4);
+		readFully(channel, length);
+		ByteBuffer bytes = ByteBuffer.allocate(length.getInt(0));
+		readFully(channel, bytes);
+		restore(bytes.array());
+	}
+	private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			if (channel.read(buffer) < 0)
+				throw new IOException("Snapshot ended early.");
+	}
+	/**
+	 * Writes a cable value, in 16 bits if it fits, or in 64-bit pieces.
+	 */
+	private static void writeCable(DataOutput out, Cable cable) throws IOException {
+		int width = cable.getWidth();
+		if (width <= 16) {
+			out.writeShort((int) cable.toInteger());
+			return;
+		}
+		for (int start = 0; start < width; start += 64) {
+			long piece = 0;
+			for (int i = Math.min(width, start + 64) - 1; i >= start; --i)
+				piece = piece << 1 | (cable.getBit(i) ? 1 : 0);
+			out.writeLong(piece);
+		}
+	}
+	private static void readCable(DataInput in, Cable cable) throws IOException {
+		int width = cable.getWidth();
+		if (width <= 16) {
+			cable.putValue(in.readShort());
+			return;
+		}
+		for (int start = 0; start < width; start += 64) {
+			long piece = in.readLong();
+			for (int i = start; i < width && i < start + 64; ++i) {
+				cable.putBit(i, (piece & 1) == 1);
+				piece >>= 1;
+			}
+		}
+	}
+	/**
+	 * Records the machine as it is now, so it can be put back by {@link #resetToBaseline()}.
+	 * History is forgotten, so stepping back cannot go past the baseline.
+	 */
+	public void markBaseline() {
+		baseline = new Baseline(stateCables, chips.values().toArray(new Chip[chips.size()]));
+		if (history != null)
+			history.reset();
+	}
+	/**
+	 * Puts the machine back to the state recorded by {@link #markBaseline()}, writing only what changed since.
+	 * Much cheaper than restoring a snapshot when few memory words were written. History is forgotten.
+	 * @return Number of words put back.
+	 * @throws IllegalStateException When no baseline was marked.
+	 */
+	public int resetToBaseline() {
+		if (baseline == null)
+			panic("No baseline marked.");
+		int words = baseline.reset();
+		if (history != null)
+			history.reset();
+		return words;
+	}
+	/**
+	 * Starts recording history of the default size, so cycles can be undone.
+	 */
+	public void startHistory() {
+		startHistory(DEFAULT_HISTORY_CYCLES, DEFAULT_HISTORY_CHANGES);
+	}
+	/**
+	 * Starts recording history. Anything recorded before is forgotten.
+	 * @param maxCycles - Most cycles to remember.
+	 * @param maxChanges - Most changed words to remember, in all cycles.
+	 */
+	public void startHistory(int maxCycles, int maxChanges) {
+		stopHistory();
+		history = new History(this, stateCables, chips.values().toArray(new Chip[chips.size()]), maxCycles, maxChanges);
+	}
+	public void stopHistory() {
+		if (history != null)
+			history.stop();
+		history = null;
+	}
+	/**
+	 * @return The history being recorded, or null.
+	 */
+	public History getHistory() {
+		return history;
+	}
+	/**
+	 * Undoes cycles. See {@link History#stepBack(int)}.
+	 * @param cycles
+	 * @return Cycles undone. 0 if history is not recorded.
+	 */
+	public int stepBack(int cycles) {
+		return history == null ? 0 : history.stepBack(cycles);
+	}
+	/**
+	 * Undoes cycles until condition holds. See {@link History#runBackTo(History.Condition)}.
+	 * @param condition
+	 * @return Cycles undone. 0 if history is not recorded.
+	 */
+	public int runBackTo(History.Condition condition) {
+		return history == null ? 0 : history.runBackTo(condition);
+	}
+	/**
+	 * Streams what the machine prints.
+	 * @param listener - Called for every word printed, or null to stop.
+	 */
+	public void setPrinterListener(Printer.Listener listener) {
+		printer.setListener(listener);
+	}
+	public String getScreen(){
+		return printer.toString();
+	}
+	public void keyPress(short key) {
+		keyboard.pressKey(key);
+	}
+	public void insertCard(InputStream card) {
+		reader.insertCard(card);
+	}
+}
@@ -0,0 +1,49 @@
+package com.photoncat.architecturesimulator.simulator;
+
+/**
+ * Is told what a machine does inside a cycle, for profilers and tracers. See {@link Machine#setObserver(MachineObserver)}.<br>
+ *
+ * Calls come from the thread running the machine, in the middle of a cycle, so they should be quick and
+ * must not touch the machine.
+ * @author Xu Ke
+ *
+ */
+public interface MachineObserver {
+	/**
+	 * A cycle starts, before its tick.
+	 * @param cycle - Number of the cycle, counted from 1 since the machine was made.
+	 */
+	void cycleStarted(long cycle);
+	/**
+	 * A pass of evaluate starts.
+	 * @param cycle
+	 * @param pass - Number of the pass in this evaluate, from 1.
+	 */
+	void passStarted(long cycle, int pass);
+	/**
+	 * A pass of evaluate ended.
+	 * @param cycle
+	 * @param pass
+	 * @param changed - If any chip changed, so another pass follows.
+	 */
+	void passEnded(long cycle, int pass, boolean changed);
+	/**
+	 * Evaluate ended, settled or at the settle pass limit.
+	 * @param cycle
+	 * @param passes - Passes it took.
+	 */
+	void settled(long cycle, int passes);
+	/**
+	 * An IO device was written or advanced during a tick.
+	 * @param port - Device number.
+	 * @param write - If a word was written to the device, otherwise its buffer was advanced.
+	 * @param value - Word written, 0 if none.
+	 */
+	void ioAccess(int port, boolean write, short value);
+	/**
+	 * The control unit changed state during a tick.
+	 * @param from - Name of the state left.
+	 * @param to - Name of the state entered.
+	 */
+	void controlStateChanged(String from, String to);
+}
@@ -0,0 +1,153 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.util.ArrayDeque;
+
+/**
+ * Keeps machines built and IPL loaded, ready to be borrowed.<br>
+ *
+ * All machines start as copies of one prototype which has run {@link Machine#IPLMagic()}, and that state
+ * is marked as their baseline. A machine given back is reset to the baseline by
+ * {@link Machine#resetToBaseline()}, which only puts back what changed, and waits for the next borrower.
+ * When every machine is out, borrowing makes a new copy rather than waiting. At most the pool size of
+ * machines is kept idle.<br>
+ *
+ * Borrowing and giving back are thread safe. Resetting is done by the thread giving the machine back.
+ * @author Xu Ke
+ *
+ */
+public class MachinePool {
+	private final Machine prototype;
+	private final int size;
+	private final ArrayDeque<Machine> idle;
+	// Metrics, guarded by this.
+	private long borrows = 0;
+	private long misses = 0;
+	private long borrowNanos = 0;
+	private long maxBorrowNanos = 0;
+	private long resets = 0;
+	private long resetNanos = 0;
+	private long maxResetNanos = 0;
+	private long resetWords = 0;
+
+	/**
+	 * Constructor. Makes a pool of headless machines.
+	 * @param size - Machines to keep ready.
+	 */
+	public MachinePool(int size) {
+		this(size, true);
+	}
+	/**
+	 * Constructor. Builds all machines at once.
+	 * @param size - Machines to keep ready.
+	 * @param headless - See {@link Machine#Machine(boolean)}.
+	 */
+	public MachinePool(int size, boolean headless) {
+		this.size = size;
+		prototype = new Machine(headless);
+		prototype.IPLMagic();
+		prototype.evaluate();
+		idle = new ArrayDeque<>(size);
+		for (int i = 0; i < size; ++i)
+			idle.push(newMachine());
+	}
+	/**
+	 * Takes a machine in its baseline state, or makes one if none is ready.
+	 * @return The machine. Give it back by {@link #giveBack(Machine)}.
+	 */
+	public Machine borrow() {
+		long start = System.nanoTime();
+		Machine machine;
+		synchronized (this) {
+			machine = idle.poll();
+		}
+		boolean miss = machine == null;
+		if (miss)
+			machine = newMachine();
+		long nanos = System.nanoTime() - start;
+		synchronized (this) {
+			borrows++;
+			if (miss)
+				misses++;
+			borrowNanos += nanos;
+			maxBorrowNanos = Math.max(maxBorrowNanos, nanos);
+		}
+		return machine;
+	}
+	/**
+	 * Resets a borrowed machine and keeps it for the next borrower. Breakpoints, the printer listener
+	 * and history are cleared too. The machine must not be used after this.
+	 * @param machine - A machine from {@link #borrow()}.
+	 */
+	public void giveBack(Machine machine) {
+		long start = System.nanoTime();
+		machine.stopHistory();
+		machine.clearBreakpoints();
+		machine.setPrinterListener(null);
+		machine.setObserver(null);
+		machine.stopGuestCounters();
+		machine.stopGuestProfiler();
+		machine.setControlCoverage(null);
+		int words = machine.resetToBaseline();
+		long nanos = System.nanoTime() - start;
+		synchronized (this) {
+			resets++;
+			resetNanos += nanos;
+			maxResetNanos = Math.max(maxResetNanos, nanos);
+			resetWords += words;
+			if (idle.size() < size)
+				idle.push(machine);
+		}
+	}
+	/**
+	 * @return Machines ready to be borrowed.
+	 */
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+	public synchronized long getBorrowCount() {
+		return borrows;
+	}
+	/**
+	 * @return Borrows that found no machine ready and made one.
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+	public synchronized double getAverageBorrowNanos() {
+		return borrows == 0 ? 0 : (double) borrowNanos / borrows;
+	}
+	public synchronized long getMaxBorrowNanos() {
+		return maxBorrowNanos;
+	}
+	public synchronized long getResetCount() {
+		return resets;
+	}
+	public synchronized double getAverageResetNanos() {
+		return resets == 0 ? 0 : (double) resetNanos / resets;
+	}
+	public synchronized long getMaxResetNanos() {
+		return maxResetNanos;
+	}
+	/**
+	 * @return Average number of words put back by a reset.
+	 */
+	public synchronized double getAverageResetWords() {
+		return resets == 0 ? 0 : (double) resetWords / resets;
+	}
+	@Override
+	public synchronized String toString() {
+		return String.format("%d idle of %d, %d borrows (%d missed) avg %.1f us max %.1f us, "
+				+ "%d resets avg %.1f us max %.1f us, %.1f words",
+				idle.size(), size, borrows, misses, getAverageBorrowNanos() / 1e3, maxBorrowNanos / 1e3,
+				resets, getAverageResetNanos() / 1e3, maxResetNanos / 1e3, getAverageResetWords());
+	}
+
+	private Machine newMachine() {
+		Machine machine;
+		synchronized (prototype) {
+			machine = prototype.copy();
+		}
+		machine.markBaseline();
+		return machine;
+	}
+}
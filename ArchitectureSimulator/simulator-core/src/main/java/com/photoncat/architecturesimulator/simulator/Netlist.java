@@ -0,0 +1,338 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.photoncat.architecturesimulator.simulator.util.ConfigurationCache;
+import com.photoncat.architecturesimulator.simulator.util.ConvenientStreamTokenizer;
+import static com.photoncat.architecturesimulator.simulator.util.ExceptionHandling.panic;
+
+/**
+ * A parsed chips definition (<i>chipsDef.ini</i>). It holds which chips to make and how to wire them, but no chip
+ * itself, so one netlist can be shared by any number of machines. It never changes after parsing.
+ * @author Xu Ke
+ *
+ */
+public class Netlist {
+	/**
+	 * A chip to make.
+	 * @author Xu Ke
+	 *
+	 */
+	public static class ChipDefinition {
+		public final String name;
+		public final String type;
+		/**
+		 * Constructor arguments, {@link Integer}s or {@link String}s.
+		 */
+		private final Object[] params;
+		public ChipDefinition(String name, String type, Object[] params) {
+			this.name = name;
+			this.type = type;
+			this.params = params;
+		}
+		/**
+		 * @return A copy of the constructor arguments.
+		 */
+		public Object[] getParams() {
+			return params.clone();
+		}
+	}
+	/**
+	 * A reference to a chip port in a cable definition, such as <i>Chip.port</i>, <i>Chip.port[start:end]</i>,
+	 * <i>Chip.port[start:end, offset]</i> or <i>Chip.port[start, offset]</i>.
+	 * @author Xu Ke
+	 *
+	 */
+	public static class PortReference {
+		public final String chip;
+		public final String port;
+		/**
+		 * Pin range on the cable. Both -1 if the whole port is connected.
+		 */
+		public final int start, end;
+		/**
+		 * Offset into the cable. -1 if not given.
+		 */
+		public final int offset;
+		public PortReference(String chip, String port, int start, int end, int offset) {
+			this.chip = chip;
+			this.port = port;
+			this.start = start;
+			this.end = end;
+			this.offset = offset;
+		}
+		/**
+		 * @return true if only part of the cable is connected.
+		 */
+		public boolean isPartial() {
+			return start >= 0;
+		}
+	}
+	/**
+	 * A cable and every port it connects. The first port decides the cable width.
+	 * @author Xu Ke
+	 *
+	 */
+	public static class CableDefinition {
+		public final List<PortReference> ports;
+		/**
+		 * Cable name, null if it has none.
+		 */
+		public final String name;
+		public CableDefinition(List<PortReference> ports, String name) {
+			this.ports = Collections.unmodifiableList(ports);
+			this.name = name;
+		}
+	}
+
+	private final List<ChipDefinition> chips;
+	private final List<CableDefinition> cables;
+	public Netlist(List<ChipDefinition> chips, List<CableDefinition> cables) {
+		this.chips = Collections.unmodifiableList(chips);
+		this.cables = Collections.unmodifiableList(cables);
+	}
+	/**
+	 * @return Chips, in definition order.
+	 */
+	public List<ChipDefinition> getChips() {
+		return chips;
+	}
+	/**
+	 * @return Cables, in definition order.
+	 */
+	public List<CableDefinition> getCables() {
+		return cables;
+	}
+
+	/**
+	 * Parsing and binary storing for {@link ConfigurationCache}.
+	 */
+	public static final ConfigurationCache.Codec<Netlist> CODEC = new ConfigurationCache.Codec<Netlist>() {
+		@Override
+		public Netlist parse(Reader source) throws IOException {
+			return Netlist.parse(source);
+		}
+		@Override
+		public void write(Netlist netlist, DataOutput out) throws IOException {
+			out.writeInt(netlist.chips.size());
+			for (ChipDefinition chip : netlist.chips) {
+				out.writeUTF(chip.name);
+				out.writeUTF(chip.type);
+				out.writeByte(chip.params.length);
+				for (Object param : chip.params) {
+					if (param instanceof String) {
+						out.writeByte('S');
+						out.writeUTF((String) param);
+					} else {
+						out.writeByte('I');
+						out.writeInt((Integer) param);
+					}
+				}
+			}
+			out.writeInt(netlist.cables.size());
+			for (CableDefinition cable : netlist.cables) {
+				out.writeBoolean(cable.name != null);
+				if (cable.name != null)
+					out.writeUTF(cable.name);
+				out.writeShort(cable.ports.size());
+				for (PortReference port : cable.ports) {
+					out.writeUTF(port.chip);
+					out.writeUTF(port.port);
+					out.writeShort(port.start);
+					out.writeShort(port.end);
+					out.writeShort(port.offset);
+				}
+			}
+		}
+		@Override
+		public Netlist read(DataInput in) throws IOException {
+			int count = in.readInt();
+			List<ChipDefinition> chips = new ArrayList<>(count);
+			for (int i = 0; i < count; ++i) {
+				String name = in.readUTF();
+				String type = in.readUTF();
+				Object[] params = new Object[in.readByte()];
+				for (int j = 0; j < params.length; ++j) {
+					if (in.readByte() == 'S')
+						params[j] = in.readUTF();
+					else
+						params[j] = in.readInt();
+				}
+				chips.add(new ChipDefinition(name, type, params));
+			}
+			count = in.readInt();
+			List<CableDefinition> cables = new ArrayList<>(count);
+			for (int i = 0; i < count; ++i) {
+				String name = in.readBoolean() ? in.readUTF() : null;
+				int portCount = in.readShort();
+				List<PortReference> ports = new ArrayList<>(portCount);
+				for (int j = 0; j < portCount; ++j)
+					ports.add(new PortReference(in.readUTF(), in.readUTF(), in.readShort(), in.readShort(), in.readShort()));
+				cables.add(new CableDefinition(ports, name));
+			}
+			return new Netlist(chips, cables);
+		}
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+	};
+
+	/**
+	 * Parses a chips definition.
+	 * Utilizes {@link java.io.StreamTokenizer} to tokenize.
+	 * @param source
+	 * @return The parsed netlist.
+	 * @throws IOException When reading failed.
+	 * @throws IllegalStateException When format error.
+	 */
+	public static Netlist parse(Reader source) throws IOException {
+		ConvenientStreamTokenizer tokens = new ConvenientStreamTokenizer(source);
+		List<ChipDefinition> chips = new ArrayList<>();
+		List<CableDefinition> cables = new ArrayList<>();
+		parseChipsDefinition(tokens, chips);
+		parseCablesDefinition(tokens, cables);
+		return new Netlist(chips, cables);
+	}
+	/**
+	 * Parser for chips definition.
+	 * @param tokens
+	 * @throws IOException
+	 */
+	private static void parseChipsDefinition(ConvenientStreamTokenizer tokens, List<ChipDefinition> chips) throws IOException{
+		if (tokens.nextToken() != '{')
+			panic("Cannot find openning brackets for chips.");
+		while (parseChip(tokens, chips));
+		if (tokens.nextToken() != '}')
+			panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be '}'.");
+	}
+	private static boolean parseChip(ConvenientStreamTokenizer tokens, List<ChipDefinition> chips) throws IOException{
+		if (tokens.nextToken() != ConvenientStreamTokenizer.TT_WORD){
+			tokens.pushBack();
+			return false;
+		}
+		String chipName = tokens.sval;
+		if (tokens.nextToken() != ':')
+			panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be '.'.");
+		if (tokens.nextToken() != ConvenientStreamTokenizer.TT_WORD)
+			panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be typeName.");
+		String chipType = tokens.sval;
+		List<Object> params = new ArrayList<Object>();
+		Object param = null;
+		while ((param = parseParam(tokens)) != null)
+			params.add(param);
+		chips.add(new ChipDefinition(chipName, chipType, params.toArray()));
+		return true;
+	}
+	private static Object parseParam(ConvenientStreamTokenizer tokens) throws IOException {
+		if (tokens.nextToken() != ','){
+			tokens.pushBack();
+			return null;
+		}
+		int token = tokens.nextToken();
+		// Quoted params are passed as strings, such as file names.
+		if (token == '"')
+			return tokens.sval;
+		if (token != ConvenientStreamTokenizer.TT_NUMBER)
+			panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be param.");
+		return (int)tokens.nval;
+	}
+	/**
+	 * Parser for cables definition.
+	 * @param tokens
+	 * @throws IOException
+	 */
+	private static void parseCablesDefinition(ConvenientStreamTokenizer tokens, List<CableDefinition> cables) throws IOException {
+		if (tokens.nextToken() != '{')
+			panic("Cannot find openning brackets for cables.");
+		while (parseCable(tokens, cables));
+		if (tokens.nextToken() != '}')
+			panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be '}'.");
+	}
+	private static boolean parseCable(ConvenientStreamTokenizer tokens, List<CableDefinition> cables) throws IOException {
+		PortReference chipPortDef = parseChipPort(tokens);
+		if (chipPortDef == null)
+			return false;
+		List<PortReference> ports = new ArrayList<>();
+		ports.add(chipPortDef);
+		int token = tokens.nextToken();
+		while (token == '-') {
+			chipPortDef = parseChipPort(tokens);
+			if (chipPortDef == null)
+				panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nExpecting: Chip.Port");
+			ports.add(chipPortDef);
+			token = tokens.nextToken();
+		}
+		if (token == ':') {
+			if (tokens.nextToken() != ConvenientStreamTokenizer.TT_WORD)
+				panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nExpecting: Cable name.");
+			cables.add(new CableDefinition(ports, tokens.sval));
+			return true;
+		}
+		tokens.pushBack();
+		cables.add(new CableDefinition(ports, null));
+		return true;
+	}
+
+	private static PortReference parseChipPort(ConvenientStreamTokenizer tokens) throws IOException{
+		if (tokens.nextToken() != ConvenientStreamTokenizer.TT_WORD) {
+			tokens.pushBack();
+			return null;
+		}
+		String chipName = tokens.sval;
+		if (tokens.nextToken() != '.')
+			panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be '.'.");
+		if (tokens.nextToken() != ConvenientStreamTokenizer.TT_WORD)
+			panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be port name.");
+		String portName = tokens.sval;
+		if (tokens.nextToken() != '[') {
+			tokens.pushBack();
+			return new PortReference(chipName, portName, -1, -1, -1);
+		}
+		if (tokens.nextToken() != ConvenientStreamTokenizer.TT_NUMBER)
+			panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be pinStart.");
+		int startingPort = (int) tokens.nval;
+		int token = tokens.nextToken();
+		int endingPort = -1;
+		switch(token){
+		case ':':
+			if (tokens.nextToken() != ConvenientStreamTokenizer.TT_NUMBER)
+				panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be pinEnd.");
+			endingPort = (int) tokens.nval;
+			break;
+		case ',':
+			if (tokens.nextToken() != ConvenientStreamTokenizer.TT_NUMBER)
+				panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be offset.");
+			endingPort = (int) tokens.nval;
+			if (tokens.nextToken() != ']')
+				panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be ']'.");
+			return new PortReference(chipName, portName, startingPort, startingPort, endingPort);
+		case ']':
+			return new PortReference(chipName, portName, startingPort, startingPort, -1);
+		default:
+			panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be ':' or ']' or ','.");
+		}
+		token = tokens.nextToken();
+		int offset = -1;
+		switch(token){
+		case ',':
+			if (tokens.nextToken() != ConvenientStreamTokenizer.TT_NUMBER)
+				panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be offset.");
+			offset = (int) tokens.nval;
+			if (tokens.nextToken() != ']')
+				panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be ']'.");
+			return new PortReference(chipName, portName, startingPort, endingPort, offset);
+		case ']':
+			return new PortReference(chipName, portName, startingPort, endingPort, -1);
+		default:
+			panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be ':' or ']' or ','.");
+		}
+		return null; // Won't reach here.
+	}
+}
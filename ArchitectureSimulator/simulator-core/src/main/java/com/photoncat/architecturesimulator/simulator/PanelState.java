@@ -0,0 +1,216 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.util.Arrays;
+
+import com.photoncat.architecturesimulator.simulator.chips.BulbSet;
+import com.photoncat.architecturesimulator.simulator.chips.Chip;
+import com.photoncat.architecturesimulator.simulator.chips.ClockRegister;
+import com.photoncat.architecturesimulator.simulator.chips.ControlUnit;
+import com.photoncat.architecturesimulator.simulator.chips.RegisterFile;
+
+/**
+ * An immutable copy of what the front panel shows, taken from a machine at one moment.<br>
+ * 
+ * Values of chips missing in the machine are 0, or empty strings. A missing bus cable is told by {@link #hasBus}.
+ * @author Xu Ke
+ *
+ */
+public final class PanelState {
+	/**
+	 * Bits returned by {@link #changedSince(PanelState)}, one for each panel property.
+	 */
+	public static final int PC = 1;
+	public static final int MAR = 1 << 1;
+	public static final int MBR = 1 << 2;
+	public static final int IR = 1 << 3;
+	public static final int CC = 1 << 4;
+	public static final int BUS = 1 << 5;
+	public static final int GPRF = 1 << 6;
+	public static final int IRF = 1 << 7;
+	public static final int VALUE_BULBS = 1 << 8;
+	public static final int ADDRESS_BULBS = 1 << 9;
+	public static final int CONTROL_UNIT = 1 << 10;
+	public static final int MEMORY = 1 << 11;
+	public static final int SCREEN = 1 << 12;
+	public static final int PAUSED = 1 << 13;
+	public static final int RUNNING = 1 << 14;
+	public static final int CYCLES = 1 << 15;
+	public static final int ERROR = 1 << 16;
+	public static final int ALL = (1 << 17) - 1;
+	public final long pc;
+	public final long mar;
+	public final long mbr;
+	public final long ir;
+	public final long cc;
+	public final long bus;
+	/**
+	 * If the machine has a bus cable. The shipped netlist does not.
+	 */
+	public final boolean hasBus;
+	private final long[] gprf;
+	private final long[] irf;
+	/**
+	 * Bulbs states, bit i for bulb i.
+	 */
+	public final int valueBulbs;
+	public final int addressBulbs;
+	public final String controlUnit;
+	public final String memory;
+	public final String screen;
+	public final boolean paused;
+	/**
+	 * If the machine was running continuously.
+	 */
+	public final boolean running;
+	/**
+	 * Cycles run by {@link SimulationThread} so far.
+	 */
+	public final long cycles;
+	/**
+	 * Why the last continuous run stopped. Null if it has not stopped yet.
+	 */
+	public final RunResult.StopReason lastStop;
+	/**
+	 * What the last failed command or run of {@link SimulationThread} threw. Null if nothing failed since the
+	 * last continuous run started.
+	 */
+	public final RuntimeException error;
+	
+	/**
+	 * Takes a copy of a machine. Must be called by the thread running the machine.
+	 * @param machine
+	 * @param running
+	 * @param cycles
+	 * @param lastStop
+	 * @param error
+	 */
+	public PanelState(Machine machine, boolean running, long cycles, RunResult.StopReason lastStop, RuntimeException error) {
+		pc = registerValue(machine, "PC");
+		mar = registerValue(machine, "MAR");
+		mbr = registerValue(machine, "MBR");
+		ir = registerValue(machine, "IR");
+		cc = registerValue(machine, "CC");
+		Cable busCable = machine.getCable("bus");
+		hasBus = busCable != null;
+		bus = hasBus ? busCable.toInteger() : 0;
+		gprf = registerFileValues(machine, "GPRF");
+		irf = registerFileValues(machine, "IRF");
+		valueBulbs = bulbs(machine, "panelValue");
+		addressBulbs = bulbs(machine, "panelAddress");
+		Chip cu = machine.getChip("CU");
+		controlUnit = cu == null ? "" : cu.toString();
+		Chip mem = machine.getChip("memory");
+		memory = mem == null ? "" : mem.toString();
+		screen = machine.getScreen();
+		Cable pausedCable = machine.getCable("paused");
+		paused = pausedCable != null && pausedCable.getBit(0);
+		this.running = running;
+		this.cycles = cycles;
+		this.lastStop = lastStop;
+		this.error = error;
+	}
+	private static long registerValue(Machine machine, String name) {
+		Chip chip = machine.getChip(name);
+		return chip instanceof ClockRegister ? ((ClockRegister) chip).getValue() : 0;
+	}
+	private static long[] registerFileValues(Machine machine, String name) {
+		Chip chip = machine.getChip(name);
+		if (!(chip instanceof RegisterFile))
+			return new long[0];
+		RegisterFile file = (RegisterFile) chip;
+		long[] values = new long[file.getSize()];
+		for (int i = 0; i < values.length; ++i)
+			values[i] = file.getValue(i);
+		return values;
+	}
+	private static int bulbs(Machine machine, String name) {
+		Chip chip = machine.getChip(name);
+		if (!(chip instanceof BulbSet))
+			return 0;
+		BulbSet set = (BulbSet) chip;
+		int bits = 0;
+		for (int i = 0; i < set.getWidth() && i < 32; ++i)
+			if (set.getBit(i))
+				bits |= 1 << i;
+		return bits;
+	}
+	/**
+	 * Finds which properties differ from an older state.
+	 * @param old - The older state, or null if there is none.
+	 * @return Bits of changed properties, such as {@link #PC} | {@link #SCREEN}. {@link #ALL} if old is null.
+	 */
+	public int changedSince(PanelState old) {
+		if (old == null)
+			return ALL;
+		int changed = 0;
+		if (pc != old.pc)
+			changed |= PC;
+		if (mar != old.mar)
+			changed |= MAR;
+		if (mbr != old.mbr)
+			changed |= MBR;
+		if (ir != old.ir)
+			changed |= IR;
+		if (cc != old.cc)
+			changed |= CC;
+		if (bus != old.bus || hasBus != old.hasBus)
+			changed |= BUS;
+		if (!Arrays.equals(gprf, old.gprf))
+			changed |= GPRF;
+		if (!Arrays.equals(irf, old.irf))
+			changed |= IRF;
+		if (valueBulbs != old.valueBulbs)
+			changed |= VALUE_BULBS;
+		if (addressBulbs != old.addressBulbs)
+			changed |= ADDRESS_BULBS;
+		if (!controlUnit.equals(old.controlUnit))
+			changed |= CONTROL_UNIT;
+		if (!memory.equals(old.memory))
+			changed |= MEMORY;
+		if (!screen.equals(old.screen))
+			changed |= SCREEN;
+		if (paused != old.paused)
+			changed |= PAUSED;
+		if (running != old.running || lastStop != old.lastStop)
+			changed |= RUNNING;
+		if (cycles != old.cycles)
+			changed |= CYCLES;
+		if (error != old.error)
+			changed |= ERROR;
+		return changed;
+	}
+	/**
+	 * @param index
+	 * @return Value of a general purpose register.
+	 */
+	public long getGeneralPurposeRegister(int index) {
+		return gprf[index];
+	}
+	public int getGeneralPurposeRegisterCount() {
+		return gprf.length;
+	}
+	/**
+	 * @param index
+	 * @return Value of an index register.
+	 */
+	public long getIndexRegister(int index) {
+		return irf[index];
+	}
+	public int getIndexRegisterCount() {
+		return irf.length;
+	}
+	/**
+	 * @param i
+	 * @return Status of a value bulb.
+	 */
+	public boolean getValueBulb(int i) {
+		return (valueBulbs >>> i & 1) != 0;
+	}
+	/**
+	 * @param i
+	 * @return Status of an address bulb.
+	 */
+	public boolean getAddressBulb(int i) {
+		return (addressBulbs >>> i & 1) != 0;
+	}
+}
@@ -0,0 +1,167 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.LinkedList;
+
+/**
+ * The console printer, or the screen.<br>
+ *
+ * The words printed lately are kept after the console as it was before them, so {@link History} can take
+ * printing back when cycles are undone, by printing them again up to where it goes back to. At least the
+ * last {@link #UNDO_WORDS} words can be taken back; going further back leaves the oldest console kept.
+ * @author Xu Ke
+ *
+ */
+public class Printer extends IODevice {
+	/**
+	 * Told about every word printed, on the thread running the machine.
+	 */
+	public interface Listener {
+		void printed(short word);
+	}
+	public static final int UNDO_WORDS = 4096;
+	private LinkedList<String> console;
+	/**
+	 * The console before the words in printed.
+	 */
+	private LinkedList<String> replayFrom;
+	/**
+	 * Words printed since replayFrom.
+	 */
+	private StringBuilder printed = new StringBuilder();
+	/**
+	 * Words printed before replayFrom.
+	 */
+	private long printedBefore = 0;
+	private volatile Listener listener;
+	
+	public Printer() {
+		console = new LinkedList<>();
+		console.add("");
+		replayFrom = new LinkedList<>(console);
+	}
+	/**
+	 * Constructor. Copies the console of original, along with what can be taken back. The listener is not copied.
+	 * @param original
+	 */
+	public Printer(Printer original) {
+		synchronized(original) {
+			console = new LinkedList<>(original.console);
+			replayFrom = new LinkedList<>(original.replayFrom);
+			printed.append(original.printed);
+			printedBefore = original.printedBefore;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		String nl = "";
+		synchronized(this) {
+			for (String str : console) {
+				sb.append(nl);
+				sb.append(str);
+				nl = "\n";
+			}
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @param listener - Listener to tell about printed words, or null for none.
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+	
+	@Override
+	public void output(short word) {
+		Listener l = listener;
+		if (l != null)
+			l.printed(word);
+		synchronized(this) {
+			print(console, word);
+			printed.append((char) word);
+			if (printed.length() == 2 * UNDO_WORDS) {
+				// Moves replayFrom forward, keeping the last UNDO_WORDS words.
+				for (int i = 0; i < UNDO_WORDS; ++i)
+					print(replayFrom, (short) printed.charAt(i));
+				printed.delete(0, UNDO_WORDS);
+				printedBefore += UNDO_WORDS;
+			}
+		}
+	}
+	
+	/**
+	 * Puts a word on a console.
+	 * @param console
+	 * @param word
+	 */
+	private static void print(LinkedList<String> console, short word) {
+		if (word == '\n')
+			console.add("");
+		else {
+			String last = console.removeLast();
+			if (last.length() < 60) {
+				last += (char) word;
+				console.add(last);
+			} else {
+				console.add(last);
+				console.add("" + (char) word);
+			}
+		}
+		while (console.size() > 16) {
+			console.removeFirst();
+		}
+	}
+	
+	/**
+	 * Word: the words printed so far. Setting it lower takes back the words printed after.
+	 */
+	@Override
+	public int getStateWordCount() {
+		return 1;
+	}
+	@Override
+	public void getStateWords(long[] to, int offset) {
+		synchronized(this) {
+			to[offset] = printedBefore + printed.length();
+		}
+	}
+	@Override
+	public void setStateWord(int index, long value) {
+		synchronized(this) {
+			if (value >= printedBefore + printed.length())
+				return;
+			printed.setLength((int) Math.max(0, value - printedBefore));
+			printedBefore = value - printed.length();
+			console = new LinkedList<>(replayFrom);
+			for (int i = 0; i < printed.length(); ++i)
+				print(console, (short) printed.charAt(i));
+		}
+	}
+	
+	@Override
+	public void saveState(DataOutput out) throws IOException {
+		synchronized(this) {
+			out.writeByte(console.size());
+			for (String str : console)
+				out.writeUTF(str);
+			out.writeLong(printedBefore + printed.length());
+		}
+	}
+	
+	@Override
+	public void loadState(DataInput in) throws IOException {
+		synchronized(this) {
+			console.clear();
+			for (int i = in.readByte(); i > 0; --i)
+				console.add(in.readUTF());
+			replayFrom = new LinkedList<>(console);
+			printed.setLength(0);
+			printedBefore = in.readLong();
+		}
+	}
+}
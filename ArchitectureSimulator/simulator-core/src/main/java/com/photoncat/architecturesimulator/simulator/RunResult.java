@@ -0,0 +1,73 @@
+package com.photoncat.architecturesimulator.simulator;
+
+/**
+ * What a call to {@link Machine#run(long)} did.
+ * @author Xu Ke
+ *
+ */
+public final class RunResult {
+	/**
+	 * Why a run stopped.
+	 */
+	public enum StopReason {
+		/**
+		 * The control unit reached the <i>HALT</i> state.
+		 */
+		HALT,
+		/**
+		 * The control unit reached the <i>INVALID_INSTRUCTION</i> state.
+		 */
+		INVALID_INSTRUCTION,
+		/**
+		 * The next instruction to fetch is at a breakpoint.
+		 */
+		BREAKPOINT,
+		/**
+		 * Evaluate hit the settle pass limit, see {@link Machine#getUnsettledChips()}.
+		 */
+		NOT_SETTLED,
+		/**
+		 * All cycles asked for were executed.
+		 */
+		CYCLE_BUDGET,
+	}
+	/**
+	 * Cycles executed. A cycle is one tick followed by an evaluate.
+	 */
+	public final long cycles;
+	/**
+	 * Instructions finished, counted as the control unit goes back to fetch or halts.
+	 */
+	public final long instructions;
+	public final StopReason reason;
+	/**
+	 * Wall clock time of the run in nanoseconds.
+	 */
+	public final long elapsedNanos;
+	
+	public RunResult(long cycles, StopReason reason, long elapsedNanos) {
+		this(cycles, 0, reason, elapsedNanos);
+	}
+	public RunResult(long cycles, long instructions, StopReason reason, long elapsedNanos) {
+		this.cycles = cycles;
+		this.instructions = instructions;
+		this.reason = reason;
+		this.elapsedNanos = elapsedNanos;
+	}
+	/**
+	 * @return Cycles executed per second.
+	 */
+	public double getCyclesPerSecond() {
+		return elapsedNanos == 0 ? 0 : cycles * 1e9 / elapsedNanos;
+	}
+	/**
+	 * @return Cycles per instruction, 0 if no instruction finished.
+	 */
+	public double getCyclesPerInstruction() {
+		return instructions == 0 ? 0 : (double) cycles / instructions;
+	}
+	@Override
+	public String toString() {
+		return reason + " after " + cycles + " cycles, " + instructions + " instructions in " + elapsedNanos / 1000 + " us";
+	}
+}
@@ -0,0 +1,63 @@
+package com.photoncat.architecturesimulator.simulator;
+
+/**
+ * Passes {@link Machine#evaluate()} took to settle: a histogram, the average and the maximum.<br>
+ *
+ * A pass evaluates every chip once, and the last pass of a settled evaluate is the one where nothing
+ * changed, so a settled evaluate takes at least 1 pass.
+ * @author Xu Ke
+ *
+ */
+public final class SettleStatistics {
+	/**
+	 * Buckets of the histogram. Evaluates taking this many passes or more go to the last one.
+	 */
+	public static final int BUCKETS = 64;
+
+	private final long[] histogram = new long[BUCKETS];
+	private long evaluates = 0;
+	private long passes = 0;
+	private int maxPasses = 0;
+
+	void record(int passes) {
+		++histogram[Math.min(passes, BUCKETS - 1)];
+		++evaluates;
+		this.passes += passes;
+		if (passes > maxPasses)
+			maxPasses = passes;
+	}
+	/**
+	 * @return Evaluates by passes taken: element i is the count of evaluates taking i passes.
+	 */
+	public long[] getHistogram() {
+		return histogram.clone();
+	}
+	public long getEvaluates() {
+		return evaluates;
+	}
+	/**
+	 * @return Passes per evaluate, 0 if there was none.
+	 */
+	public double getAveragePasses() {
+		return evaluates == 0 ? 0 : (double) passes / evaluates;
+	}
+	public int getMaxPasses() {
+		return maxPasses;
+	}
+	public void reset() {
+		for (int i = 0; i < histogram.length; ++i)
+			histogram[i] = 0;
+		evaluates = 0;
+		passes = 0;
+		maxPasses = 0;
+	}
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%.2f passes on average, at most %d, in %d evaluates%n", getAveragePasses(), maxPasses, evaluates));
+		for (int i = 0; i < histogram.length; ++i)
+			if (histogram[i] != 0)
+				sb.append(i).append(i == BUCKETS - 1 ? "+" : "").append('\t').append(histogram[i]).append('\n');
+		return sb.toString();
+	}
+}
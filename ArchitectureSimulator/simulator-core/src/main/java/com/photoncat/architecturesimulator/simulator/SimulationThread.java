@@ -0,0 +1,186 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A thread owning a {@link Machine}. Nothing but this thread touches the machine: other threads
+ * {@link #post(Command)} commands to it, and read what the panel shows from {@link #getPanelState()}.<br>
+ * 
+ * The state is an immutable {@link PanelState} swapped in atomically, at most once per publish interval.
+ * Readers never wait for the simulation, and the simulation never waits for readers.<br>
+ * 
+ * A command or run throwing a {@link RuntimeException} does not end the thread: running stops, and the
+ * exception is published as {@link PanelState#error}.
+ * @author Xu Ke
+ *
+ */
+public class SimulationThread extends Thread {
+	/**
+	 * Something to do to the machine, on the simulation thread.
+	 */
+	public interface Command {
+		void run(Machine machine);
+	}
+	/**
+	 * Called on the simulation thread after a new state is published. Must not block.
+	 */
+	public interface Listener {
+		void statePublished(PanelState state);
+	}
+	/**
+	 * Cycles run between two looks at the command queue while running continuously.
+	 */
+	public static final int SLICE_CYCLES = 16;
+	/**
+	 * Default time between two published states, about one display frame.
+	 */
+	public static final long DEFAULT_PUBLISH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+	
+	private final Machine machine;
+	private final LinkedBlockingQueue<Command> commands = new LinkedBlockingQueue<>();
+	private final AtomicReference<PanelState> state = new AtomicReference<>();
+	private final long publishInterval;
+	private volatile Listener listener;
+	private volatile boolean alive = true;
+	/**
+	 * Fields below are only used by the simulation thread.
+	 */
+	private boolean running = false;
+	private long cycles = 0;
+	private RunResult.StopReason lastStop = null;
+	/**
+	 * What the last failed command or run threw, null if nothing failed since the last continuous run started.
+	 */
+	private RuntimeException lastError = null;
+	/**
+	 * If the machine changed after the last published state.
+	 */
+	private boolean dirty = false;
+	private long lastPublish;
+	
+	/**
+	 * Constructor. The machine must not be used by anyone else afterwards.
+	 * @param machine
+	 */
+	public SimulationThread(Machine machine) {
+		this(machine, DEFAULT_PUBLISH_INTERVAL_NANOS);
+	}
+	/**
+	 * Constructor.
+	 * @param machine
+	 * @param publishIntervalNanos - Least time between two published states.
+	 */
+	public SimulationThread(Machine machine, long publishIntervalNanos) {
+		super("Simulation");
+		setDaemon(true);
+		this.machine = machine;
+		this.publishInterval = publishIntervalNanos;
+		// The first state is taken here, so getPanelState() never returns null.
+		publish();
+	}
+	/**
+	 * Queues a command. Never blocks.
+	 * @param command
+	 */
+	public void post(Command command) {
+		commands.add(command);
+	}
+	/**
+	 * Starts or stops running continuously. A run also stops on halt, invalid instructions and breakpoints.
+	 * @param run
+	 */
+	public void setRunning(final boolean run) {
+		post(new Command() {
+			@Override
+			public void run(Machine machine) {
+				running = run;
+				if (run) {
+					lastStop = null;
+					lastError = null;
+				}
+			}
+		});
+	}
+	/**
+	 * @return The latest published state.
+	 */
+	public PanelState getPanelState() {
+		return state.get();
+	}
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+	/**
+	 * Stops the thread. Commands not run yet are dropped.
+	 */
+	public void shutdown() {
+		alive = false;
+		interrupt();
+	}
+	
+	@Override
+	public void run() {
+		try {
+			while (alive) {
+				Command command = nextCommand();
+				while (command != null) {
+					try {
+						command.run(machine);
+					} catch (RuntimeException e) {
+						fail(e);
+					}
+					dirty = true;
+					command = commands.poll();
+				}
+				if (running) {
+					try {
+						RunResult result = machine.run(SLICE_CYCLES);
+						cycles += result.cycles;
+						if (result.reason != RunResult.StopReason.CYCLE_BUDGET) {
+							running = false;
+							lastStop = result.reason;
+						}
+					} catch (RuntimeException e) {
+						fail(e);
+					}
+					dirty = true;
+				}
+				if (dirty && System.nanoTime() - lastPublish >= publishInterval)
+					publish();
+			}
+		} catch (InterruptedException e) {
+			// Shut down.
+		}
+	}
+	/**
+	 * Waits for a command only when there is nothing else to do.
+	 * @return A command, or null if there is none and the thread has work.
+	 * @throws InterruptedException
+	 */
+	private Command nextCommand() throws InterruptedException {
+		if (running)
+			return commands.poll();
+		if (dirty)
+			return commands.poll(Math.max(0, publishInterval - (System.nanoTime() - lastPublish)), TimeUnit.NANOSECONDS);
+		return commands.take();
+	}
+	/**
+	 * Stops running after a command or run threw, keeping the exception to publish.
+	 * @param e
+	 */
+	private void fail(RuntimeException e) {
+		running = false;
+		lastError = e;
+	}
+	private void publish() {
+		PanelState published = new PanelState(machine, running, cycles, lastStop, lastError);
+		state.set(published);
+		lastPublish = System.nanoTime();
+		dirty = false;
+		Listener l = listener;
+		if (l != null)
+			l.statePublished(published);
+	}
+}
@@ -23,6 +23,22 @@ public class SingleCable extends Cable {
 		for (int i = 0; i < width; ++i)
 			bits.add(new Bit());
 	}
+	/**
+	 * Constructor. Copies the bits of original.
+	 * @param original
+	 */
+	private SingleCable(SingleCable original) {
+		bits = new ArrayList<Bit>(original.bits.size());
+		for (Bit bit : original.bits) {
+			Bit copy = new Bit();
+			copy.put(bit.get());
+			bits.add(copy);
+		}
+	}
+	@Override
+	public Cable copy(Copies copies) {
+		return new SingleCable(this);
+	}
 	/**
 	 * Returns cable width.
 	 * @return cable width
@@ -0,0 +1,117 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.photoncat.architecturesimulator.simulator.chips.Chip;
+
+/**
+ * The state of a machine seen as a row of words: the values on all cables, then the state words of
+ * all chips (see {@link Chip#getStateWords(long[], int)}). Cables wider than 64 bits take one word for
+ * each 64 bits. Memory words are not in the row.
+ * @author Xu Ke
+ *
+ */
+class StateWords {
+	private final Chip[] chips;
+	private final int[] chipWordCount;
+	/**
+	 * Number of words used by cables. Chip words come after them.
+	 */
+	private final int cableWords;
+	/**
+	 * For each cable word, which 64 bits of its cable it holds. Cables of 64 bits or less have one word.
+	 */
+	private final Cable[] cableOfWord;
+	private final int[] pieceOfWord;
+	/**
+	 * For each chip word, its chip and its number in the chip.
+	 */
+	private final Chip[] chipOfWord;
+	private final int[] indexInChip;
+
+	/**
+	 * Constructor.
+	 * @param cables - Cables holding values.
+	 * @param chips - All chips.
+	 */
+	StateWords(Cable[] cables, Chip[] chips) {
+		this.chips = chips;
+		chipWordCount = new int[chips.length];
+		for (int i = 0; i < chips.length; ++i)
+			chipWordCount[i] = chips[i].getStateWordCount();
+		List<Cable> wordCables = new ArrayList<>();
+		List<Integer> wordPieces = new ArrayList<>();
+		for (Cable cable : cables)
+			for (int piece = 0; piece * 64 < cable.getWidth(); ++piece) {
+				wordCables.add(cable);
+				wordPieces.add(piece);
+			}
+		cableWords = wordCables.size();
+		cableOfWord = wordCables.toArray(new Cable[cableWords]);
+		pieceOfWord = new int[cableWords];
+		for (int i = 0; i < cableWords; ++i)
+			pieceOfWord[i] = wordPieces.get(i);
+		List<Chip> wordChips = new ArrayList<>();
+		List<Integer> wordIndexes = new ArrayList<>();
+		for (Chip chip : chips)
+			for (int i = 0; i < chip.getStateWordCount(); ++i) {
+				wordChips.add(chip);
+				wordIndexes.add(i);
+			}
+		chipOfWord = wordChips.toArray(new Chip[wordChips.size()]);
+		indexInChip = new int[chipOfWord.length];
+		for (int i = 0; i < indexInChip.length; ++i)
+			indexInChip[i] = wordIndexes.get(i);
+	}
+	/**
+	 * @return Number of words in the row.
+	 */
+	int size() {
+		return cableWords + chipOfWord.length;
+	}
+	/**
+	 * Reads all words.
+	 * @param to - At least {@link #size()} long.
+	 */
+	void read(long[] to) {
+		for (int i = 0; i < cableWords; ++i) {
+			Cable cable = cableOfWord[i];
+			if (cable.getWidth() <= 64) {
+				to[i] = cable.toInteger();
+			} else {
+				int start = pieceOfWord[i] * 64;
+				long piece = 0;
+				for (int bit = Math.min(cable.getWidth(), start + 64) - 1; bit >= start; --bit)
+					piece = piece << 1 | (cable.getBit(bit) ? 1 : 0);
+				to[i] = piece;
+			}
+		}
+		int offset = cableWords;
+		for (int i = 0; i < chips.length; ++i) {
+			chips[i].getStateWords(to, offset);
+			offset += chipWordCount[i];
+		}
+	}
+	/**
+	 * Puts a word back.
+	 * @param index
+	 * @param value
+	 */
+	void write(int index, long value) {
+		if (index >= cableWords) {
+			chipOfWord[index - cableWords].setStateWord(indexInChip[index - cableWords], value);
+			return;
+		}
+		Cable cable = cableOfWord[index];
+		if (cable.getWidth() <= 64) {
+			cable.putValue(value);
+			return;
+		}
+		int start = pieceOfWord[index] * 64;
+		for (int bit = start; bit < cable.getWidth() && bit < start + 64; ++bit) {
+			cable.putBit(bit, (value & 1) == 1);
+			value >>= 1;
+		}
+	}
+}
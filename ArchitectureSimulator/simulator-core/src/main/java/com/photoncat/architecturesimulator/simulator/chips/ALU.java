@@ -2,6 +2,7 @@ package com.photoncat.architecturesimulator.simulator.chips;
 
 import com.photoncat.architecturesimulator.simulator.Cable;
 import com.photoncat.architecturesimulator.simulator.CablePartialAdapter;
+import com.photoncat.architecturesimulator.simulator.Copies;
 import com.photoncat.architecturesimulator.simulator.SingleCable;
 
 /**
@@ -101,6 +102,12 @@ public class ALU extends ChipsSet {
 		jumpmux.connectPort("input15", cable);
 	}
 	
+	@Override
+	protected void copyState(Copies copies) {
+		super.copyState(copies);
+		su = (ShiftingUnit) copies.of(su);
+	}
+	
 	@Override
 	public void connectPort(String name, Cable cable) {
 		super.connectPort(name, cable);
@@ -2,6 +2,7 @@ package com.photoncat.architecturesimulator.simulator.chips;
 
 import com.photoncat.architecturesimulator.simulator.Cable;
 import com.photoncat.architecturesimulator.simulator.CablePartialAdapter;
+import com.photoncat.architecturesimulator.simulator.Copies;
 import com.photoncat.architecturesimulator.simulator.SingleCable;
 
 /**
@@ -108,6 +109,12 @@ public class ArithmeticUnit extends ChipsSet {
 		et.connectPort("same", new CablePartialAdapter(1, conditionAdapter, 3));
 	}
 	
+	@Override
+	protected void copyState(Copies copies) {
+		super.copyState(copies);
+		conditionAdapter = (CablePartialAdapter) copies.of(conditionAdapter);
+	}
+	
 	@Override
 	public void connectPort(String name, Cable cable) {
 		super.connectPort(name, cable);
@@ -2,6 +2,7 @@ package com.photoncat.architecturesimulator.simulator.chips;
 
 import com.photoncat.architecturesimulator.simulator.Cable;
 import com.photoncat.architecturesimulator.simulator.CablePartialAdapter;
+import com.photoncat.architecturesimulator.simulator.Copies;
 
 /**
  * A group of bulbs, which can be on and off. It's going to take a group of input that is either true or false,
@@ -35,6 +36,14 @@ public class BulbSet extends ChipsSet {
 			addChip(bulbs[i]);
 		}
 	}
+	@Override
+	protected void copyState(Copies copies) {
+		super.copyState(copies);
+		bulbs = bulbs.clone();
+		for (int i = 0; i < bulbs.length; ++i)
+			bulbs[i] = (IndicatorBulb) copies.of(bulbs[i]);
+		inputAdapter = (CablePartialAdapter) copies.of(inputAdapter);
+	}
 	/**
 	 * Need to reMother the cable so the bulbs takes inputs from the new input.
 	 */
@@ -53,4 +62,10 @@ public class BulbSet extends ChipsSet {
 			return bulbs[i].isOn();
 		return false;
 	}
+	/**
+	 * @return Number of bulbs.
+	 */
+	public int getWidth() {
+		return bulbs.length;
+	}
 }
@@ -0,0 +1,231 @@
+package com.photoncat.architecturesimulator.simulator.chips;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.Copies;
+import com.photoncat.architecturesimulator.simulator.DummyCable;
+
+/**
+ * A chip. This chip works as a black box. It takes 0 or more inputs (as {@link Cable}), and gives
+ * 0 or more outputs (also as {@link Cable}). <br>
+ * 
+ * Each port has a name, and a specific width.<br>
+ * 
+ * This Chip class works as an <b>abstract</b> class.
+ * 
+ * @author Xu Ke
+ *
+ */
+public abstract class Chip implements Cloneable {
+	/**
+	 * Constructor. Initializes ports tables.
+	 */
+	public Chip(){
+		/*
+		portFormat: port name to width 
+		ports : define different port in the chip
+		
+		
+		*/
+		portsFormat = new HashMap<>();
+		ports = new HashMap<>();
+	}   
+	/**
+	 * We are using tick here to indicate a <b>clock tick</b>, so we don't have to simulate a 
+	 * wiring between clock and each chip.<br>
+	 * 
+	 * This method only simulates <b>the clock rising edge</b>. It doesn't change any of the 
+	 * chip's outputs.
+	 * 
+	 */
+	public void tick(){}
+	/**
+	 * Instead, this method evaluates any change in the chip (which takes time to happen).<br>
+	 * 
+	 * Such as a change in the outputs.
+	 * @return true if anything in output has changed.
+	 */
+	public boolean evaluate(){ return false; }
+	/**
+	 * All ports width mapping.
+	 */
+	protected Map<String, Integer> portsFormat;
+	/**
+	 * All ports cable mapping.
+	 */
+	protected Map<String, Cable> ports;
+	/**
+	 * Ports formats in use, so chips of the same kind can share one. Keys and values are the same map.
+	 */
+	private static final Map<Map<String, Integer>, Map<String, Integer>> sharedFormats = new HashMap<>();
+	/**
+	 * Replaces the ports format with an equal one shared by all chips of the same kind, along with its port
+	 * name strings, so hundreds of machines don't hold hundreds of copies. Chip sets share those of their
+	 * inner chips as well.<br>
+	 * No port can be added afterwards, so this is called once the chip is made.
+	 */
+	public void sharePortsFormat() {
+		Map<String, Integer> shared;
+		synchronized (sharedFormats) {
+			shared = sharedFormats.get(portsFormat);
+			if (shared == null) {
+				shared = Collections.unmodifiableMap(new HashMap<>(portsFormat));
+				sharedFormats.put(shared, shared);
+			}
+		}
+		if (shared == portsFormat)
+			return;
+		// Keys of the ports map become the shared name strings too.
+		Map<String, Cable> sharedNames = new HashMap<>();
+		for (String name : shared.keySet())
+			sharedNames.put(name, ports.get(name));
+		ports = sharedNames;
+		portsFormat = shared;
+	}
+	/**
+	 * Adds a port, with the given name and given width. No ports share same name 
+	 * allowed. This method should be called only during construction.
+	 * @param name
+	 * @param width
+	 */
+	protected void addPort(String name, int width) {
+		if (!portsFormat.containsKey(name)) {
+			// We only put new input if there is not an existing one.
+			portsFormat.put(name, width);
+			ports.put(name, new DummyCable(width));
+		}
+	}
+	/**
+	 * Assigning a value into a given port.
+	 * @param name
+	 * @param value
+	 * @return true if the port changes.
+	 */
+	protected boolean assignPort(String name, long value) {
+		return assignPort(getPort(name), value);
+	}
+	/**
+	 * Assigning a value into a port cable.
+	 * @param port
+	 * @param value
+	 * @return true if the port changes.
+	 */
+	protected static boolean assignPort(Cable port, long value) {
+		long oldValue = port.toInteger();
+		port.putValue(value);
+		return oldValue != port.toInteger();
+	}
+	/**
+	 * Connects a cable to a port.
+	 * @param name - port name.
+	 * @param cable - cable to connect.
+	 * @throws IllegalStateException When the cable trying to connect mismatches in port width.
+	 */
+	public void connectPort(String name, Cable cable){
+		if (portsFormat.containsKey(name) && portsFormat.get(name) == cable.getWidth()) {
+			if (!(ports.get(name) instanceof DummyCable))
+				System.err.println("Warning: trying to reconnect port '"+name+"'.\nOld cable overwriten.");
+			ports.put(name, cable);
+		}
+		else
+			throw new IllegalStateException("Connecting failed when trying to connect port '" + name +"', whose width is " + portsFormat.get(name) + ", with a cable of width " + cable.getWidth());
+	}
+	/**
+	 * Returns an cable connecting to the port of the given name.
+	 * @param name
+	 * @return Specified cable.
+	 */
+	public Cable getPort(String name) {
+		return ports.get(name);
+	}
+	/**
+	 * @param name
+	 * @return The width of port[name]. <b>-1</b> when the given name not existing.
+	 */
+	public int getPortWidth(String name) {
+		if (portsFormat.containsKey(name))
+			return portsFormat.get(name);
+		else
+			return -1;
+	}
+	/**
+	 * Writes the state kept inside the chip, such as a register value. Values on ports are not included,
+	 * they are kept by the cables.<br>
+	 * Chips without state write nothing.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void saveState(DataOutput out) throws IOException {}
+	/**
+	 * Reads the state written by {@link #saveState(DataOutput)}.
+	 * @param in
+	 * @throws IOException
+	 */
+	public void loadState(DataInput in) throws IOException {}
+	/**
+	 * Number of state words of the chip, see {@link #getStateWords(long[], int)}.
+	 * @return 0 for chips without state, or whose state is all on cables.
+	 */
+	public int getStateWordCount() {
+		return 0;
+	}
+	/**
+	 * Copies the state kept in fields of the chip, such as flags, as {@link #getStateWordCount()} words.<br>
+	 * History records call this every cycle, so it must not allocate.
+	 * @param to
+	 * @param offset - Where the first word goes.
+	 */
+	public void getStateWords(long[] to, int offset) {}
+	/**
+	 * Puts back one state word got by {@link #getStateWords(long[], int)}.
+	 * @param index - Word number, from 0.
+	 * @param value
+	 */
+	public void setStateWord(int index, long value) {}
+	/**
+	 * Makes a chip with the same state and the same wiring, for a copied machine. Only called by
+	 * {@link Copies#of(Chip)}, which makes each copy once.<br>
+	 * Fields are copied as they are, so what is never changed once the chip is made, such as the ports format,
+	 * is shared with the original. The ports are then put on the copies of their cables, and
+	 * {@link #copyState(Copies)} replaces what the copy must not share.
+	 * @param copies
+	 * @return The copy.
+	 */
+	public Chip copy(Copies copies) {
+		Chip copy;
+		try {
+			copy = (Chip) clone();
+		} catch (CloneNotSupportedException e) {
+			// Never happens, chips are cloneable.
+			throw new IllegalStateException(e);
+		}
+		copy.ports = new HashMap<>(ports);
+		for (Map.Entry<String, Cable> e : copy.ports.entrySet())
+			e.setValue(copies.of(e.getValue()));
+		copy.copyState(copies);
+		return copy;
+	}
+	/**
+	 * Called on a copy just made by {@link #copy(Copies)}, whose fields are still those of the original.
+	 * Chips with arrays, cables, inner chips or other objects that change as they run put their own copies
+	 * in place, through copies for cables and chips. Observers are dropped.<br>
+	 * Chips with only primitive fields and ports need nothing.
+	 * @param copies
+	 */
+	protected void copyState(Copies copies) {}
+	/**
+	 * Adds all cables on the ports of this chip, and of any chip inside it, to out.
+	 * Chips keeping values on cables of their own add them as well.
+	 * @param out
+	 */
+	public void collectCables(Collection<Cable> out) {
+		out.addAll(ports.values());
+	}
+}
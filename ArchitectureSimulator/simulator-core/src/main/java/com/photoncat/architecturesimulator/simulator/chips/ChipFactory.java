@@ -0,0 +1,247 @@
+package com.photoncat.architecturesimulator.simulator.chips;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A factory for chips. Chips of this package are made by a registry of direct constructor calls, filled once.
+ * Other chips are found by reflection tricks so further development can be more focused on architecture, and
+ * their constructors are remembered in the registry after the first lookup.
+ * @author Xu Ke
+ *
+ */
+public class ChipFactory {
+	/**
+	 * Makes a chip from constructor arguments.
+	 * @author Xu Ke
+	 *
+	 */
+	public interface ChipMaker {
+		/**
+		 * @param args - The constructor arguments.
+		 * @return The chip object.
+		 */
+		Chip make(Object[] args);
+	}
+	/**
+	 * Known constructors, keyed by full class name and argument types, such as
+	 * <i>com.photoncat.architecturesimulator.simulator.chips.Mux(int,int)</i>.
+	 */
+	private static final Map<String, ChipMaker> registry = new HashMap<>();
+	/**
+	 * When set, the registry is bypassed and every chip is made by reflection. Only useful for benchmarking.
+	 */
+	private static boolean reflectionOnly = false;
+	/**
+	 * When set, chips made share their ports format with chips of the same kind, see {@link Chip#sharePortsFormat()}.
+	 */
+	private static boolean sharing = true;
+	static {
+		register("ALU", (args) -> new ALU());
+		register("Adder", (args) -> new Adder((Integer) args[0]), int.class);
+		register("AndGate", (args) -> new AndGate((Integer) args[0], (Integer) args[1]), int.class, int.class);
+		register("AndGate", (args) -> new AndGate((Integer) args[0]), int.class);
+		register("ArithmeticUnit", (args) -> new ArithmeticUnit((Integer) args[0]), int.class);
+		register("BulbSet", (args) -> new BulbSet((Integer) args[0]), int.class);
+		register("ClockRegister", (args) -> new ClockRegister((Integer) args[0]), int.class);
+		register("ConstantChip", (args) -> new ConstantChip((Integer) args[0], (Integer) args[1]), int.class, int.class);
+		register("ConstantChip", (args) -> new ConstantChip((Integer) args[0]), int.class);
+		register("ControlUnit", (args) -> new ControlUnit());
+		register("ControlledNegater", (args) -> new ControlledNegater((Integer) args[0]), int.class);
+		register("Decreaser", (args) -> new Decreaser((Integer) args[0]), int.class);
+		register("Demux", (args) -> new Demux((Integer) args[0], (Integer) args[1]), int.class, int.class);
+		register("Encoder", (args) -> new Encoder((Integer) args[0]), int.class);
+		register("EqualTester", (args) -> new EqualTester((Integer) args[0]), int.class);
+		register("Gate", (args) -> new Gate((Integer) args[0]), int.class);
+		register("IODevices", (args) -> new IODevices());
+		register("Increaser", (args) -> new Increaser((Integer) args[0]), int.class);
+		register("IndicatorBulb", (args) -> new IndicatorBulb());
+		register("InstructionDecoder", (args) -> new InstructionDecoder());
+		register("IsZeroChip", (args) -> new IsZeroChip((Integer) args[0]), int.class);
+		register("LogicalUnit", (args) -> new LogicalUnit((Integer) args[0]), int.class);
+		register("MappedMemory", (args) -> new MappedMemory((String) args[0]), String.class);
+		register("MappedMemory", (args) -> new MappedMemory((Integer) args[0], (String) args[1]), int.class, String.class);
+		register("MappedMemory", (args) -> new MappedMemory((Integer) args[0], (String) args[1], (Integer) args[2]), int.class, String.class, int.class);
+		register("Memory", (args) -> new Memory());
+		register("Memory", (args) -> new Memory((Integer) args[0]), int.class);
+		register("MulDiver", (args) -> new MulDiver((Integer) args[0]), int.class);
+		register("Mux", (args) -> new Mux((Integer) args[0], (Integer) args[1]), int.class, int.class);
+		register("Negater", (args) -> new Negater((Integer) args[0]), int.class);
+		register("NotGate", (args) -> new NotGate((Integer) args[0]), int.class);
+		register("NumberedSwitch", (args) -> new NumberedSwitch((Integer) args[0]), int.class);
+		register("OrGate", (args) -> new OrGate((Integer) args[0], (Integer) args[1]), int.class, int.class);
+		register("OrGate", (args) -> new OrGate((Integer) args[0]), int.class);
+		register("RegisterFile", (args) -> new RegisterFile((Integer) args[0], (Integer) args[1]), int.class, int.class);
+		register("ShiftingUnit", (args) -> new ShiftingUnit((Integer) args[0]), int.class);
+		register("Switch", (args) -> new Switch());
+		register("SwitchesSet", (args) -> new SwitchesSet((Integer) args[0]), int.class);
+		register("ZeroGate", (args) -> new ZeroGate((Integer) args[0]), int.class);
+	}
+	/**
+	 * Registers a way to make a chip, so makeChip doesn't need reflection for it.
+	 * @param chipName - The full class name of the chip. If under the same package as this one, package name can be omitted.
+	 * @param maker
+	 * @param argClasses - Constructor argument types, primitive types for numbers.
+	 */
+	public static void register(String chipName, ChipMaker maker, Class<?>... argClasses) {
+		synchronized (registry) {
+			registry.put(registryKey(fullName(chipName), argClasses), maker);
+		}
+	}
+	/**
+	 * Makes every chip by reflection, or goes back to the registry.
+	 * @param value
+	 */
+	public static void setReflectionOnly(boolean value) {
+		reflectionOnly = value;
+	}
+	/**
+	 * Turns sharing of ports formats on or off. It is on by default; turning it off is only useful for measuring.
+	 * @param value
+	 */
+	public static void setSharing(boolean value) {
+		sharing = value;
+	}
+	/**
+	 * Make a chip with the given name and given constructor arguments.
+	 * @param chipName - The full class name of the chip. If under the same package as this one, package name can be omitted.
+	 * @param args - The constructor arguments.
+	 * @return The chip object.
+	 */
+	public static Chip makeChip(String chipName, Object[] args) {
+		Chip chip = makeNewChip(chipName, args);
+		if (sharing)
+			chip.sharePortsFormat();
+		return chip;
+	}
+	private static Chip makeNewChip(String chipName, Object[] args) {
+		// Get full class name.
+		chipName = fullName(chipName);
+		Class<?>[] argClasses = getArgClasses(args);
+		if (reflectionOnly)
+			return makeChipByReflection(chipName, argClasses, args);
+		String key = registryKey(chipName, argClasses);
+		ChipMaker maker;
+		synchronized (registry) {
+			maker = registry.get(key);
+		}
+		if (maker != null)
+			return maker.make(args);
+		// Unknown chip. Look it up once, then remember how to make it.
+		final Constructor<?> constructor = getConstructor(chipName, argClasses);
+		final String name = chipName;
+		maker = (a) -> newInstance(name, constructor, a);
+		synchronized (registry) {
+			registry.put(key, maker);
+		}
+		return maker.make(args);
+	}
+	/**
+	 * Make a chip by reflection only.
+	 */
+	private static Chip makeChipByReflection(String chipName, Class<?>[] argClasses, Object[] args) {
+		return newInstance(chipName, getConstructor(chipName, argClasses), args);
+	}
+	/**
+	 * Adds package name to chips in this package.
+	 * @param chipName
+	 * @return Full class name.
+	 */
+	private static String fullName(String chipName) {
+		if (!chipName.contains("."))
+			return ChipFactory.class.getPackage().getName() + "." + chipName;
+		return chipName;
+	}
+	/**
+	 * @param chipName
+	 * @param argClasses
+	 * @return Registry key, like <i>full.ClassName(int,int)</i>.
+	 */
+	private static String registryKey(String chipName, Class<?>[] argClasses) {
+		StringBuilder sb = new StringBuilder(chipName);
+		sb.append('(');
+		for (int i = 0; i < argClasses.length; ++i) {
+			if (i > 0)
+				sb.append(',');
+			sb.append(argClasses[i].getName());
+		}
+		sb.append(')');
+		return sb.toString();
+	}
+	/**
+	 * Gets argument types. If the arguments type are wrapped class, unwrap them.
+	 * @param args
+	 * @return Argument types.
+	 */
+	private static Class<?>[] getArgClasses(Object[] args) {
+		Class<?>[] argClasses = new Class<?>[args.length];
+		for (int i = 0; i < args.length; ++i) {
+			argClasses[i] = args[i].getClass();
+			if (argClasses[i] == Integer.class)
+				argClasses[i] = int.class;
+			else if (argClasses[i] == Short.class)
+				argClasses[i] = short.class;
+			else if (argClasses[i] == Long.class)
+				argClasses[i] = long.class;
+			else if (argClasses[i] == Byte.class)
+				argClasses[i] = byte.class;
+			else if (argClasses[i] == Boolean.class)
+				argClasses[i] = boolean.class;
+			else if (argClasses[i] == Character.class)
+				argClasses[i] = char.class;
+			else if (argClasses[i] == Float.class)
+				argClasses[i] = float.class;
+			else if (argClasses[i] == Double.class)
+				argClasses[i] = double.class;
+		}
+		return argClasses;
+	}
+	/**
+	 * Finds a chip constructor by reflection.
+	 * @param chipName - Full class name.
+	 * @param argClasses
+	 * @return The constructor.
+	 */
+	private static Constructor<?> getConstructor(String chipName, Class<?>[] argClasses) {
+		Class<?> chipClass = null;
+		try {
+			// Get chip class.
+			chipClass = Class.forName(chipName);
+		} catch (ClassNotFoundException e) {
+			System.err.println("Cannot find chip of name \"" + chipName + "\".");
+			System.exit(-1);
+		}
+		Constructor<?> constructor = null;
+		try {
+			// Get constructor.
+			constructor = chipClass.getConstructor(argClasses);
+		} catch (NoSuchMethodException | SecurityException e) {
+			System.err.println("Invalid arguments for chip \"" + chipName + "\".");
+			System.exit(-1);
+		}
+		return constructor;
+	}
+	/**
+	 * Construct chip by reflection.
+	 * @param chipName - Full class name, for error messages.
+	 * @param constructor
+	 * @param args
+	 * @return The chip object.
+	 */
+	private static Chip newInstance(String chipName, Constructor<?> constructor, Object[] args) {
+		Chip chip = null;
+		try {
+			chip = (Chip) constructor.newInstance(args);
+		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException
+				| InvocationTargetException e) {
+			System.err.println("Invalid arguments for chip \"" + chipName + "\".");
+			System.exit(-1);
+		} catch (ClassCastException e) {
+			System.err.println("\"" + chipName + "\" is not a chip.");
+			System.exit(-1);
+		}
+		return chip;
+	}
+}
@@ -0,0 +1,134 @@
+package com.photoncat.architecturesimulator.simulator.chips;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Counts calls, changes and time of tick and evaluate, per chip of a machine and per inner chip of its chip
+ * sets.<br>
+ *
+ * Only kept when {@link #ENABLED}, which is read once from the system property <i>simulator.chipMetrics</i>.
+ * Being a static final, the checks for it are removed by the JIT when it is off, so machines not measured
+ * run as if this class did not exist. A chip set's time includes its inner chips.
+ * @author Xu Ke
+ *
+ */
+public final class ChipMetrics {
+	/**
+	 * If machines measure their chips. Start the JVM with <i>-Dsimulator.chipMetrics=true</i> to turn on.
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("simulator.chipMetrics");
+
+	/**
+	 * Numbers of one chip.
+	 */
+	public static final class Entry {
+		/**
+		 * Name in the chips definition. Inner chips are named <i>set.index:Type</i>.
+		 */
+		public final String name;
+		public final long evaluateCalls;
+		/**
+		 * Evaluates that returned true.
+		 */
+		public final long evaluateChanges;
+		public final long evaluateNanos;
+		public final long tickCalls;
+		public final long tickNanos;
+		private Entry(String name, long evaluateCalls, long evaluateChanges, long evaluateNanos, long tickCalls, long tickNanos) {
+			this.name = name;
+			this.evaluateCalls = evaluateCalls;
+			this.evaluateChanges = evaluateChanges;
+			this.evaluateNanos = evaluateNanos;
+			this.tickCalls = tickCalls;
+			this.tickNanos = tickNanos;
+		}
+		public long getTotalNanos() {
+			return evaluateNanos + tickNanos;
+		}
+	}
+
+	private String[] names = new String[64];
+	private long[] evaluateCalls = new long[64];
+	private long[] evaluateChanges = new long[64];
+	private long[] evaluateNanos = new long[64];
+	private long[] tickCalls = new long[64];
+	private long[] tickNanos = new long[64];
+	private int size = 0;
+
+	/**
+	 * Adds a chip, and the inner chips if it is a chip set.
+	 * @param name
+	 * @param chip
+	 * @return Slot of the chip, to pass to {@link #ticked(int, long)} and {@link #evaluated(int, boolean, long)}.
+	 */
+	public int add(String name, Chip chip) {
+		if (size == names.length) {
+			int capacity = size * 2;
+			names = Arrays.copyOf(names, capacity);
+			evaluateCalls = Arrays.copyOf(evaluateCalls, capacity);
+			evaluateChanges = Arrays.copyOf(evaluateChanges, capacity);
+			evaluateNanos = Arrays.copyOf(evaluateNanos, capacity);
+			tickCalls = Arrays.copyOf(tickCalls, capacity);
+			tickNanos = Arrays.copyOf(tickNanos, capacity);
+		}
+		int slot = size++;
+		names[slot] = name;
+		if (chip instanceof ChipsSet)
+			((ChipsSet) chip).attachMetrics(this, name);
+		return slot;
+	}
+	public void ticked(int slot, long nanos) {
+		++tickCalls[slot];
+		tickNanos[slot] += nanos;
+	}
+	public void evaluated(int slot, boolean changed, long nanos) {
+		++evaluateCalls[slot];
+		if (changed)
+			++evaluateChanges[slot];
+		evaluateNanos[slot] += nanos;
+	}
+	/**
+	 * Sets all numbers back to 0.
+	 */
+	public void reset() {
+		Arrays.fill(evaluateCalls, 0);
+		Arrays.fill(evaluateChanges, 0);
+		Arrays.fill(evaluateNanos, 0);
+		Arrays.fill(tickCalls, 0);
+		Arrays.fill(tickNanos, 0);
+	}
+	/**
+	 * @return Numbers of all chips, the slowest first.
+	 */
+	public List<Entry> getEntries() {
+		List<Entry> entries = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i)
+			entries.add(new Entry(names[i], evaluateCalls[i], evaluateChanges[i], evaluateNanos[i], tickCalls[i], tickNanos[i]));
+		Collections.sort(entries, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry a, Entry b) {
+				return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+			}
+		});
+		return entries;
+	}
+	/**
+	 * @return A table of {@link #getEntries()}, one chip a line.
+	 */
+	public String report() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-40s %12s %12s %12s %10s %12s %10s%n", "chip", "evaluates", "changed", "eval us", "ticks", "tick us", "total us"));
+		for (Entry e : getEntries())
+			sb.append(String.format("%-40s %12d %12d %12d %10d %12d %10d%n", e.name, e.evaluateCalls, e.evaluateChanges,
+					e.evaluateNanos / 1000, e.tickCalls, e.tickNanos / 1000, e.getTotalNanos() / 1000));
+		return sb.toString();
+	}
+	@Override
+	public String toString() {
+		return report();
+	}
+}
@@ -0,0 +1,204 @@
+package com.photoncat.architecturesimulator.simulator.chips;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.Copies;
+
+/**
+ * Sometimes we need to combine serveral chips.
+ * 
+ * This is when we need - 
+ * 
+ * A chip set!
+ * 
+ * @author Xu Ke
+ *
+ */
+public abstract class ChipsSet extends Chip {
+	protected List<Chip> chips;
+	protected Map<String, List<Object[]>> relation;
+	/**
+	 * Where inner chips are counted, null if not measured. See {@link ChipMetrics}.
+	 */
+	private ChipMetrics metrics;
+	private int[] metricsSlots;
+	public ChipsSet() {
+		chips = new ArrayList<>();
+		relation = new HashMap<>();
+	}
+	
+	protected void addChip(Chip c) {
+		chips.add(c);
+	}
+	
+	protected void addChipPortRelation(String portOnChipSet, Chip chip, String portOnInnerChip) {
+		if (!relation.containsKey(portOnChipSet)) {
+			relation.put(portOnChipSet, new ArrayList<>()); 
+		} 
+		relation.get(portOnChipSet).add(new Object[]{chip, portOnInnerChip});
+	}
+	
+	@Override
+	public void connectPort(String name, Cable cable) {
+		if (!relation.containsKey(name)) {
+			super.connectPort(name, cable);
+		} else {
+			for (Object[] pair : relation.get(name)) {
+				((Chip)pair[0]).connectPort((String)pair[1], cable);
+			}
+		}
+	}
+	
+	/**
+	 * Ports passed to inner chips are the cables of the first inner chip they were passed to.
+	 */
+	@Override
+	public Cable getPort(String name) {
+		if (!relation.containsKey(name)) {
+			return super.getPort(name);
+		} else {
+			Object[] pair = relation.get(name).get(0);
+			return ((Chip)pair[0]).getPort((String)pair[1]);
+		}
+	}
+	
+	@Override
+	public int getPortWidth(String name){
+		if (!relation.containsKey(name)) {
+			return super.getPortWidth(name);
+		} else {
+			Object[] pair = relation.get(name).get(0);
+			return ((Chip)pair[0]).getPortWidth((String)pair[1]);
+		}
+	}
+	
+	@Override
+	public void tick() {
+		if (ChipMetrics.ENABLED && metrics != null) {
+			for (int i = 0; i < chips.size(); ++i) {
+				long start = System.nanoTime();
+				chips.get(i).tick();
+				metrics.ticked(metricsSlots[i], System.nanoTime() - start);
+			}
+			return;
+		}
+		for (int i = 0; i < chips.size(); ++i)
+			chips.get(i).tick();
+	}
+	
+	@Override
+	public boolean evaluate() {
+		boolean result = false;
+		if (ChipMetrics.ENABLED && metrics != null) {
+			for (int i = 0; i < chips.size(); ++i) {
+				long start = System.nanoTime();
+				boolean changed = chips.get(i).evaluate();
+				metrics.evaluated(metricsSlots[i], changed, System.nanoTime() - start);
+				result |= changed;
+			}
+			return result;
+		}
+		for (int i = 0; i < chips.size(); ++i)
+			result |= chips.get(i).evaluate();
+		return result;
+	}
+	
+	/**
+	 * Counts inner chips in metrics, named after this set.
+	 * @param metrics
+	 * @param name - Name of this set.
+	 */
+	void attachMetrics(ChipMetrics metrics, String name) {
+		this.metrics = metrics;
+		metricsSlots = new int[chips.size()];
+		for (int i = 0; i < chips.size(); ++i) {
+			Chip c = chips.get(i);
+			metricsSlots[i] = metrics.add(name + "." + i + ":" + c.getClass().getSimpleName(), c);
+		}
+	}
+	
+	@Override
+	public void saveState(DataOutput out) throws IOException {
+		for (Chip c : chips)
+			c.saveState(out);
+	}
+	
+	@Override
+	public void loadState(DataInput in) throws IOException {
+		for (Chip c : chips)
+			c.loadState(in);
+	}
+	
+	/**
+	 * Inner chips, and those ports are passed to, are replaced by their copies.
+	 */
+	@Override
+	protected void copyState(Copies copies) {
+		List<Chip> originalChips = chips;
+		chips = new ArrayList<>(originalChips.size());
+		for (Chip c : originalChips)
+			chips.add(copies.of(c));
+		Map<String, List<Object[]>> originalRelation = relation;
+		relation = new HashMap<>();
+		for (Map.Entry<String, List<Object[]>> e : originalRelation.entrySet()) {
+			List<Object[]> pairs = new ArrayList<>(e.getValue().size());
+			for (Object[] pair : e.getValue())
+				pairs.add(new Object[]{copies.of((Chip) pair[0]), pair[1]});
+			relation.put(e.getKey(), pairs);
+		}
+		metrics = null;
+		metricsSlots = null;
+	}
+	
+	@Override
+	public void collectCables(Collection<Cable> out) {
+		super.collectCables(out);
+		for (Chip c : chips)
+			c.collectCables(out);
+	}
+	
+	@Override
+	public void sharePortsFormat() {
+		super.sharePortsFormat();
+		for (Chip c : chips)
+			c.sharePortsFormat();
+	}
+	
+	@Override
+	public int getStateWordCount() {
+		int count = 0;
+		for (Chip c : chips)
+			count += c.getStateWordCount();
+		return count;
+	}
+	
+	@Override
+	public void getStateWords(long[] to, int offset) {
+		for (int i = 0; i < chips.size(); ++i) {
+			Chip c = chips.get(i);
+			c.getStateWords(to, offset);
+			offset += c.getStateWordCount();
+		}
+	}
+	
+	@Override
+	public void setStateWord(int index, long value) {
+		for (int i = 0; i < chips.size(); ++i) {
+			Chip c = chips.get(i);
+			int count = c.getStateWordCount();
+			if (index < count) {
+				c.setStateWord(index, value);
+				return;
+			}
+			index -= count;
+		}
+	}
+}
@@ -1,6 +1,9 @@
 package com.photoncat.architecturesimulator.simulator.chips;
 
+import java.util.Collection;
+
 import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.Copies;
 import com.photoncat.architecturesimulator.simulator.SingleCable;
 
 /**
@@ -60,4 +63,22 @@ public class ClockRegister extends Chip {
 	public void setValue(long i) {
 		data.putValue(i);
 	}
+	/**
+	 * @return The value inside.
+	 */
+	public long getValue() {
+		return data.toInteger();
+	}
+	@Override
+	protected void copyState(Copies copies) {
+		data = copies.of(data);
+	}
+	/**
+	 * The stored value is a cable too, so snapshots and history keep it with the other cables.
+	 */
+	@Override
+	public void collectCables(Collection<Cable> out) {
+		super.collectCables(out);
+		out.add(data);
+	}
 }
@@ -14,7 +14,7 @@ import com.photoncat.architecturesimulator.simulator.SingleCable;
  */
 public class ConstantChip extends Chip {
 	/**
-	 * The constant data for output.
+	 * The constant data for output. Never changed, so copies share it.
 	 */
 	private Cable data;
 	/**
@@ -0,0 +1,180 @@
+package com.photoncat.architecturesimulator.simulator.chips;
+
+import java.util.Arrays;
+
+/**
+ * Coverage of a control unit definition: cycles in each state, and every (state, opcode) transition taken,
+ * in a dense table indexed like the transitions of {@link ControlDefinition}. See
+ * {@link ControlUnit#setCoverage(ControlCoverage)}.<br>
+ *
+ * One coverage can be given to many control units of the same definition, one after another, to gather what
+ * a whole test corpus covers. It is not thread safe: give each thread its own and {@link #merge(ControlCoverage)}
+ * them.<br>
+ *
+ * The report lists what was never exercised: states, transitions between two states, and opcodes with a rule
+ * of their own never seen in a state, such as an instruction never decoded. Opcodes going to
+ * {@link ControlDefinition#INVALID_STATE_NAME} are not rules, and neither are those taking the default branch
+ * of a state, found as the state more than half of the opcodes go to; it is covered as a transition.
+ * @author Xu Ke
+ *
+ */
+public final class ControlCoverage {
+	private final ControlDefinition definition;
+	/**
+	 * Ticks ending in each state.
+	 */
+	private final long[] visits;
+	/**
+	 * Times taken, at [state * OPCODES + opcode].
+	 */
+	private final int[] taken;
+
+	public ControlCoverage(ControlDefinition definition) {
+		this.definition = definition;
+		visits = new long[definition.getStateCount()];
+		taken = new int[definition.getStateCount() * ControlDefinition.OPCODES];
+	}
+	void visited(int state) {
+		++visits[state];
+	}
+	void taken(int state, int opcode) {
+		++taken[state * ControlDefinition.OPCODES + opcode];
+	}
+	public ControlDefinition getDefinition() {
+		return definition;
+	}
+	/**
+	 * Adds what another coverage of the same definition recorded.
+	 * @param other
+	 */
+	public void merge(ControlCoverage other) {
+		if (other.definition != definition)
+			throw new IllegalArgumentException("Coverage of another control definition.");
+		for (int i = 0; i < visits.length; ++i)
+			visits[i] += other.visits[i];
+		for (int i = 0; i < taken.length; ++i)
+			taken[i] += other.taken[i];
+	}
+	/**
+	 * Sets everything back to never exercised.
+	 */
+	public void reset() {
+		Arrays.fill(visits, 0);
+		Arrays.fill(taken, 0);
+	}
+	/**
+	 * @param state
+	 * @return Ticks ending in the state.
+	 */
+	public long getVisits(int state) {
+		return visits[state];
+	}
+	/**
+	 * @param state
+	 * @param opcode
+	 * @return Times the rule of the state for the opcode was taken.
+	 */
+	public int getTaken(int state, int opcode) {
+		return taken[state * ControlDefinition.OPCODES + opcode];
+	}
+	/**
+	 * @param state
+	 * @param next
+	 * @return Times the state went to next, by any opcode.
+	 */
+	public long getTransitions(int state, int next) {
+		long total = 0;
+		for (int opcode = 0; opcode < ControlDefinition.OPCODES; ++opcode)
+			if (definition.nextState(state, opcode) == next)
+				total += getTaken(state, opcode);
+		return total;
+	}
+	/**
+	 * @param state
+	 * @return The state most opcodes go to from state, if it is more than half of them and is not
+	 * {@link ControlDefinition#INVALID_STATE_NAME}: the default branch of the rule. -1 if none.
+	 */
+	private int defaultBranch(int state) {
+		int[] counts = new int[definition.getStateCount()];
+		for (int opcode = 0; opcode < ControlDefinition.OPCODES; ++opcode)
+			++counts[definition.nextState(state, opcode)];
+		for (int next = 0; next < counts.length; ++next)
+			if (counts[next] > ControlDefinition.OPCODES / 2)
+				return next == definition.getInvalidState() ? -1 : next;
+		return -1;
+	}
+	/**
+	 * @return States, transitions and opcode rules never exercised, with how many of each there are.
+	 */
+	public String report() {
+		int invalid = definition.getInvalidState();
+		int states = definition.getStateCount();
+		StringBuilder never = new StringBuilder();
+		int visited = 0;
+		for (int s = 0; s < states; ++s) {
+			if (visits[s] != 0)
+				++visited;
+			else
+				never.append('\t').append(definition.getStateName(s)).append('\n');
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("states visited %d of %d%n", visited, states)).append(never);
+
+		never.setLength(0);
+		int edges = 0;
+		int edgesTaken = 0;
+		boolean[] seen = new boolean[states];
+		for (int s = 0; s < states; ++s) {
+			if (!definition.hasRule(s))
+				continue;
+			Arrays.fill(seen, false);
+			for (int opcode = 0; opcode < ControlDefinition.OPCODES; ++opcode) {
+				int next = definition.nextState(s, opcode);
+				if (next == invalid || seen[next])
+					continue;
+				seen[next] = true;
+				++edges;
+				if (getTransitions(s, next) != 0)
+					++edgesTaken;
+				else
+					never.append(String.format("\t%s -> %s%n", definition.getStateName(s), definition.getStateName(next)));
+			}
+		}
+		sb.append(String.format("transitions taken %d of %d%n", edgesTaken, edges)).append(never);
+
+		never.setLength(0);
+		int rules = 0;
+		int rulesTaken = 0;
+		StringBuilder opcodes = new StringBuilder();
+		for (int s = 0; s < states; ++s) {
+			if (!definition.hasRule(s))
+				continue;
+			int fallback = defaultBranch(s);
+			Arrays.fill(seen, false);
+			for (int opcode = 0; opcode < ControlDefinition.OPCODES; ++opcode) {
+				int next = definition.nextState(s, opcode);
+				if (next == invalid || next == fallback || seen[next])
+					continue;
+				seen[next] = true;
+				opcodes.setLength(0);
+				for (int o = opcode; o < ControlDefinition.OPCODES; ++o) {
+					if (definition.nextState(s, o) != next)
+						continue;
+					++rules;
+					if (getTaken(s, o) != 0)
+						++rulesTaken;
+					else
+						opcodes.append(' ').append(o);
+				}
+				if (opcodes.length() != 0)
+					never.append(String.format("\t%s -> %s:%s%n", definition.getStateName(s), definition.getStateName(next), opcodes));
+			}
+		}
+		sb.append(String.format("opcode rules taken %d of %d%n", rulesTaken, rules)).append(never);
+		return sb.toString();
+	}
+	@Override
+	public String toString() {
+		return report();
+	}
+}
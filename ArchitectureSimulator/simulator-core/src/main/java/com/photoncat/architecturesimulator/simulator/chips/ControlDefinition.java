@@ -0,0 +1,536 @@
+package com.photoncat.architecturesimulator.simulator.chips;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.photoncat.architecturesimulator.simulator.util.ConfigurationCache;
+import com.photoncat.architecturesimulator.simulator.util.ConvenientStreamTokenizer;
+import static com.photoncat.architecturesimulator.simulator.util.ExceptionHandling.panic;
+
+/**
+ * A parsed and compiled control unit definition (<i>controlDef.ini</i>).<br>
+ * States are numbered, the state conversion rules become one table indexed by state and opcode, and the output
+ * rules become lists of output port indices. It never changes after parsing, so it can be shared.
+ * @author Xu Ke
+ *
+ */
+public class ControlDefinition {
+	/**
+	 * Opcode is 7 bits wide, so there are 128 of them.
+	 */
+	public static final int OPCODES = 128;
+	/**
+	 * The state to go when there is no rule for an opcode.
+	 */
+	public static final String INVALID_STATE_NAME = "INVALID_INSTRUCTION";
+	/**
+	 * Output port names, in definition order.
+	 */
+	private final String[] outputPorts;
+	/**
+	 * State names, indexed by state number.
+	 */
+	private final String[] states;
+	private final Map<String, Integer> stateIndex = new HashMap<>();
+	private final int defaultState;
+	private final int invalidState;
+	/**
+	 * If a state has a conversion rule. States without one never change by themselves.
+	 */
+	private final boolean[] hasRule;
+	/**
+	 * Next state, at [state * OPCODES + opcode].
+	 */
+	private final int[] transitions;
+	/**
+	 * Output port indices to set, by state.
+	 */
+	private final int[][] outputs;
+
+	private ControlDefinition(String[] outputPorts, String[] states, int defaultState, boolean[] hasRule, int[] transitions, int[][] outputs) {
+		this.outputPorts = outputPorts;
+		this.states = states;
+		for (int i = 0; i < states.length; ++i)
+			stateIndex.put(states[i], i);
+		this.defaultState = defaultState;
+		this.invalidState = stateIndex.get(INVALID_STATE_NAME);
+		this.hasRule = hasRule;
+		this.transitions = transitions;
+		this.outputs = outputs;
+	}
+	/**
+	 * @return How many output ports there are.
+	 */
+	public int getOutputPortCount() {
+		return outputPorts.length;
+	}
+	/**
+	 * @param i
+	 * @return Name of output port i.
+	 */
+	public String getOutputPort(int i) {
+		return outputPorts[i];
+	}
+	/**
+	 * @return How many states there are.
+	 */
+	public int getStateCount() {
+		return states.length;
+	}
+	/**
+	 * @param state
+	 * @return Name of the state.
+	 */
+	public String getStateName(int state) {
+		return states[state];
+	}
+	/**
+	 * @param name
+	 * @return Number of the state. -1 if there is no such state.
+	 */
+	public int getStateIndex(String name) {
+		Integer index = stateIndex.get(name);
+		return index == null ? -1 : index;
+	}
+	/**
+	 * @return The state after reset.
+	 */
+	public int getDefaultState() {
+		return defaultState;
+	}
+	/**
+	 * @return The state for opcodes without any rule.
+	 */
+	public int getInvalidState() {
+		return invalidState;
+	}
+	/**
+	 * @param state
+	 * @return true if the state has a conversion rule.
+	 */
+	public boolean hasRule(int state) {
+		return hasRule[state];
+	}
+	/**
+	 * Provides the state after state regarding to current <b>opcode</b>.
+	 * @param state
+	 * @param opcode
+	 * @return Next state.
+	 */
+	public int nextState(int state, int opcode) {
+		if (!hasRule[state])
+			return state;
+		return transitions[state * OPCODES + opcode];
+	}
+	/**
+	 * @param state
+	 * @param port - Name of an output port.
+	 * @return If the state sets the port.
+	 */
+	public boolean setsOutput(int state, String port) {
+		for (int i : outputs[state])
+			if (outputPorts[i].equals(port))
+				return true;
+		return false;
+	}
+	/**
+	 * Output ports to set in a state. The array is shared, do not change it.
+	 * @param state
+	 * @return Output port indices.
+	 */
+	int[] getOutputs(int state) {
+		return outputs[state];
+	}
+
+	/**
+	 * Parsing and binary storing for {@link ConfigurationCache}.
+	 */
+	public static final ConfigurationCache.Codec<ControlDefinition> CODEC = new ConfigurationCache.Codec<ControlDefinition>() {
+		@Override
+		public ControlDefinition parse(Reader source) throws IOException {
+			return new Parser(new ConvenientStreamTokenizer(source)).parse();
+		}
+		@Override
+		public void write(ControlDefinition definition, DataOutput out) throws IOException {
+			out.writeShort(definition.outputPorts.length);
+			for (String port : definition.outputPorts)
+				out.writeUTF(port);
+			out.writeShort(definition.states.length);
+			for (String state : definition.states)
+				out.writeUTF(state);
+			out.writeShort(definition.defaultState);
+			for (int state = 0; state < definition.states.length; ++state) {
+				out.writeBoolean(definition.hasRule[state]);
+				if (definition.hasRule[state])
+					for (int opcode = 0; opcode < OPCODES; ++opcode)
+						out.writeShort(definition.transitions[state * OPCODES + opcode]);
+				out.writeShort(definition.outputs[state].length);
+				for (int port : definition.outputs[state])
+					out.writeShort(port);
+			}
+		}
+		@Override
+		public ControlDefinition read(DataInput in) throws IOException {
+			String[] outputPorts = new String[in.readShort()];
+			for (int i = 0; i < outputPorts.length; ++i)
+				outputPorts[i] = in.readUTF();
+			String[] states = new String[in.readShort()];
+			for (int i = 0; i < states.length; ++i)
+				states[i] = in.readUTF();
+			int defaultState = in.readShort();
+			boolean[] hasRule = new boolean[states.length];
+			int[] transitions = new int[states.length * OPCODES];
+			int[][] outputs = new int[states.length][];
+			for (int state = 0; state < states.length; ++state) {
+				hasRule[state] = in.readBoolean();
+				if (hasRule[state])
+					for (int opcode = 0; opcode < OPCODES; ++opcode)
+						transitions[state * OPCODES + opcode] = in.readShort();
+				outputs[state] = new int[in.readShort()];
+				for (int i = 0; i < outputs[state].length; ++i)
+					outputs[state][i] = in.readShort();
+			}
+			return new ControlDefinition(outputPorts, states, defaultState, hasRule, transitions, outputs);
+		}
+		@Override
+		public int getVersion() {
+			return 1;
+		}
+	};
+
+	/**
+	 * Parser for <i>controlDef.ini</i>. It reads the file into maps first, then compiles them into tables.
+	 * @author Xu Ke
+	 *
+	 */
+	private static class Parser {
+		/**
+		 * A helper class for state switches. It can provide instruction on how to switch state regarding to current <b>opcode</b>.
+		 * @author Xu Ke
+		 *
+		 */
+		private static class StateConverter {
+			/**
+			 * The convert table.
+			 */
+			private Map<Integer, String> convertTable = new HashMap<>();
+			/**
+			 * One optional default branch.
+			 */
+			private String defaultState = null;
+		}
+		private final ConvenientStreamTokenizer tokens;
+		private final List<String> ports = new ArrayList<>();
+		private String defaultState = null;
+		/**
+		 * Stores convert rules.
+		 */
+		private final Map<String, StateConverter> stateConvertations = new LinkedHashMap<>();
+		/**
+		 * Stores port rules.
+		 */
+		private final Map<String, Set<String>> portConvertations = new LinkedHashMap<>();
+
+		Parser(ConvenientStreamTokenizer tokens) {
+			this.tokens = tokens;
+		}
+		/**
+		 * Parses the whole file and form all logic needed.
+		 * @return The compiled definition.
+		 * @throws IOException When file error.
+		 * @throws IllegalStateException When file format error.
+		 */
+		ControlDefinition parse() throws IOException {
+			if (!parsePorts())
+				panic("Cannot parse ports.\nLine: " + tokens.lineno());
+			if (!parseStatesConversionRules())
+				panic("Cannot parse state rules.\nLine: " + tokens.lineno());
+			if (!parsePortsOutputRules())
+				panic("Cannot parse output rules.\nLine: " + tokens.lineno());
+			return compile();
+		}
+		/**
+		 * Numbers the states and turns the maps into tables.
+		 * @return The compiled definition.
+		 */
+		private ControlDefinition compile() {
+			if (defaultState == null)
+				panic("No default state found.");
+			// Number every state mentioned, in order of appearance.
+			Set<String> names = new LinkedHashSet<>();
+			names.add(defaultState);
+			for (Map.Entry<String, StateConverter> e : stateConvertations.entrySet()) {
+				names.add(e.getKey());
+				names.addAll(e.getValue().convertTable.values());
+				if (e.getValue().defaultState != null)
+					names.add(e.getValue().defaultState);
+			}
+			names.addAll(portConvertations.keySet());
+			names.add(INVALID_STATE_NAME);
+			String[] states = names.toArray(new String[names.size()]);
+			Map<String, Integer> index = new HashMap<>();
+			for (int i = 0; i < states.length; ++i)
+				index.put(states[i], i);
+			int invalid = index.get(INVALID_STATE_NAME);
+
+			boolean[] hasRule = new boolean[states.length];
+			int[] transitions = new int[states.length * OPCODES];
+			for (Map.Entry<String, StateConverter> e : stateConvertations.entrySet()) {
+				int state = index.get(e.getKey());
+				StateConverter converter = e.getValue();
+				hasRule[state] = true;
+				int fallback = converter.defaultState == null ? invalid : index.get(converter.defaultState);
+				for (int opcode = 0; opcode < OPCODES; ++opcode) {
+					String target = converter.convertTable.get(opcode);
+					transitions[state * OPCODES + opcode] = target == null ? fallback : index.get(target);
+				}
+			}
+
+			String[] outputPorts = ports.toArray(new String[ports.size()]);
+			int[][] outputs = new int[states.length][];
+			for (int i = 0; i < states.length; ++i) {
+				Set<String> targets = portConvertations.get(states[i]);
+				if (targets == null) {
+					outputs[i] = new int[0];
+					continue;
+				}
+				outputs[i] = new int[targets.size()];
+				int j = 0;
+				for (String port : targets) {
+					int portIndex = ports.indexOf(port);
+					if (portIndex < 0)
+						panic("Unknown port '" + port + "' in output rule of state " + states[i] + ".");
+					outputs[i][j++] = portIndex;
+				}
+				Arrays.sort(outputs[i]);
+			}
+			return new ControlDefinition(outputPorts, states, index.get(defaultState), hasRule, transitions, outputs);
+		}
+		/**
+		 * Parses ports.
+		 * @return
+		 * @throws IOException
+		 */
+		private boolean parsePorts() throws IOException {
+			if (tokens.nextToken() == '{') {
+				while (parsePort());
+			}
+			return tokens.nextToken() == '}';
+		}
+		/**
+		 * Parses port.
+		 * @return
+		 * @throws IOException
+		 */
+		private boolean parsePort() throws IOException {
+			int token = tokens.nextToken();
+			if (token == ConvenientStreamTokenizer.TT_WORD) {
+				if (!ports.contains(tokens.sval))
+					ports.add(tokens.sval);
+				return true;
+			}else if (token == '}') {
+				tokens.pushBack();
+				return false;
+			}
+			panic("Unexpected token: \n\t" + (token > 0 ? ((char)token) : tokens.sval) + "\n\tat line " + tokens.lineno());
+			return false;
+		}
+		/**
+		 * Parses states and conversion rules.
+		 * @return
+		 * @throws IOException
+		 */
+		private boolean parseStatesConversionRules() throws IOException {
+			if (tokens.nextToken() == '{') {
+				while (parseStateConversionRule());
+			}
+			return tokens.nextToken() == '}';
+		}
+		/**
+		 * Parses one single state conversion rule.
+		 * @return
+		 * @throws IOException
+		 */
+		private boolean parseStateConversionRule() throws IOException {
+			List<String> baseStates = parseBaseStates();
+			if (baseStates == null)
+				return false;
+			int token = tokens.nextToken();
+			if (token != ':')
+				panic("Unexpected token: \n\t" + (token > 0 ? ((char)token) : tokens.sval) + "\n\tat line " + tokens.lineno());
+			StateConverter converter = parseTargetStates();
+			if (converter == null)
+				panic("Unexpected token: \n\t" + (token > 0 ? ((char)token) : tokens.sval) + "\n\tat line " + tokens.lineno());
+			for (String base : baseStates) {
+				stateConvertations.put(base, converter);
+			}
+			return true;
+		}
+		/**
+		 * Parses a base state list.
+		 * @return
+		 * @throws IOException
+		 */
+		private List<String> parseBaseStates() throws IOException {
+			List<String> result = null;
+			int token = tokens.nextToken();
+			if (token == '{') {
+				// A base states list.
+				result = new ArrayList<>();
+				String state = null;
+				while ((state = parseWord()) != null) {
+					result.add(state);
+				}
+				if ((token = tokens.nextToken()) == '}')
+					return result;
+				else
+					panic("Unexpected token: \n\t" + (token > 0 ? ((char)token) : tokens.sval) + "\n\tat line " + tokens.lineno());
+			} else if (token == ConvenientStreamTokenizer.TT_WORD) {
+				// A single base state.
+				result = new ArrayList<>();
+				result.add(tokens.sval);
+				if (defaultState == null)
+					defaultState = tokens.sval;
+			}
+			else
+				tokens.pushBack();
+			return result;
+		}
+		/**
+		 * Parses a single state.
+		 * @return
+		 * @throws IOException
+		 */
+		private String parseWord() throws IOException {
+			int token = tokens.nextToken();
+			if (token == ConvenientStreamTokenizer.TT_WORD) {
+				return tokens.sval;
+			} else {
+				tokens.pushBack();
+				return null;
+			}
+		}
+		/**
+		 * Parses a target state list
+		 * @return
+		 * @throws IOException
+		 */
+		private StateConverter parseTargetStates() throws IOException {
+			StateConverter result = null;
+			int token = tokens.nextToken();
+			if (token == '{') {
+				// A target states list.
+				result = new StateConverter();
+				while (parseTargetPairOrDefaultTarget(result));
+				if ((token = tokens.nextToken()) == '}')
+					return result;
+				else
+					panic("Unexpected token: \n\t" + (token > 0 ? ((char)token) : tokens.sval) + "\n\tat line " + tokens.lineno());
+			} else if (token == ConvenientStreamTokenizer.TT_WORD) {
+				// A single base state.
+				result = new StateConverter();
+				result.defaultState = tokens.sval;
+			}
+			else
+				tokens.pushBack();
+			return result;
+		}
+		/**
+		 * Parse a target rule.
+		 * @param converter
+		 * @return
+		 * @throws IOException
+		 */
+		private boolean parseTargetPairOrDefaultTarget(StateConverter converter) throws IOException {
+			int token = tokens.nextToken();
+			if (token == '{') {
+				// TODO: change these two cases so they share more code.
+				List<Integer> opcodes = new ArrayList<>();
+				while(tokens.nextToken() == ConvenientStreamTokenizer.TT_NUMBER)
+					opcodes.add((int) tokens.nval);
+				if (tokens.ttype != '}')
+					panic("Unexpected token: \n\t" + (token > 0 ? ((char)token) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be '}'.");
+				if (tokens.nextToken() != ':')
+					panic("Unexpected token: \n\t" + (token > 0 ? ((char)token) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be ':'.");
+				String target = parseWord();
+				if (target == null)
+					panic("Unexpected token: \n\t" + (token > 0 ? ((char)token) : tokens.sval) + "\n\tat line " + tokens.lineno());
+				for (Integer i : opcodes)
+					converter.convertTable.put(i, target);
+				return true;
+			} else if (token == ConvenientStreamTokenizer.TT_NUMBER) {
+				int opcode = (int) tokens.nval;
+				if (tokens.nextToken() != ':')
+					panic("Unexpected token: \n\t" + (token > 0 ? ((char)token) : tokens.sval) + "\n\tat line " + tokens.lineno()+"\nShould be ':'.");
+				String target = parseWord();
+				if (target == null)
+					panic("Unexpected token: \n\t" + (token > 0 ? ((char)token) : tokens.sval) + "\n\tat line " + tokens.lineno());
+				converter.convertTable.put(opcode, target);
+				return true;
+			} else if (token == ConvenientStreamTokenizer.TT_WORD) {
+				converter.defaultState = tokens.sval;
+				return true;
+			} else {
+				tokens.pushBack();
+				return false;
+			}
+		}
+		/**
+		 * Parses state port output rules.
+		 * @return
+		 * @throws IOException
+		 */
+		private boolean parsePortsOutputRules() throws IOException {
+			if (tokens.nextToken() == '{') {
+				while (parsePortsOutputRule());
+			}
+			return tokens.nextToken() == '}';
+		}
+		/**
+		 * Parses single port output rule.
+		 * @return
+		 * @throws IOException
+		 */
+		private boolean parsePortsOutputRule() throws IOException {
+			String state = parseWord();
+			if (state == null)
+				return false;
+			portConvertations.put(state, new LinkedHashSet<String>());
+			if (tokens.nextToken() != ':')
+				panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno());
+			String targetPort = parseWord();
+			if (targetPort == null)
+				panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno());
+			do {
+				portConvertations.get(state).add(targetPort);
+				targetPort = parseNextPort();
+			}while(targetPort != null);
+			return true;
+		}
+		/**
+		 * Parses another port. Skips comma.
+		 * @return
+		 * @throws IOException
+		 */
+		private String parseNextPort() throws IOException {
+			if (tokens.nextToken() != ',') {
+				tokens.pushBack();
+				return null;
+			}
+			String port = parseWord();
+			if (port == null)
+				panic("Unexpected token: \n\t" + (tokens.ttype > 0 ? ((char)tokens.ttype) : tokens.sval) + "\n\tat line " + tokens.lineno());
+			return port;
+		}
+	}
+}
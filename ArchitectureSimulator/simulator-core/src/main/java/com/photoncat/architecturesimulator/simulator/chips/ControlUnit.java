@@ -0,0 +1,271 @@
+package com.photoncat.architecturesimulator.simulator.chips;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.Copies;
+import com.photoncat.architecturesimulator.simulator.MachineObserver;
+import com.photoncat.architecturesimulator.simulator.util.ConfigurationCache;
+import com.photoncat.architecturesimulator.simulator.util.ResourceLoader;
+
+/**
+ * The control unit. It controls how everything else works, such as load signals, or who is to use the bus.<br>
+ * This design reads a script for status changes inside the ControlUnit, so to enable more flexible design.<br>
+ * 
+ * The controlUnit has three inputs: <br>
+ * 		* opcode[7], 0:5 is opcode, and 6 is I bit. So, all opcode greater than 64 is the same one with 
+ * 					the value 32 lesser.<br>
+ * 		* pause[1], if set to true while tick, the control unit will not change its status, and all output will be set to 0.<br>
+ * 		* reset[1], if set to true while tick, the control unit will always change its status to the default state.<br>
+ * 
+ * And it has several outputs connecting to every part in the CPU chip. These outputs are defined in the <i>controlDef.ini</i>.
+ * 
+ * @author Xu Ke
+ *
+ */
+public class ControlUnit extends Chip {
+	/**
+	 * The parsed control unit definition. Shared by every control unit made from the same file.
+	 */
+	private ControlDefinition definition;
+	/**
+	 * Stores current control unit state.
+	 */
+	private int currentState;
+	
+	/**
+	 * Stores if the control unit has ticked. Since the control unit is the most confident unit, it knows what to do and only evaluate once.
+	 */
+	private boolean ticked = false;
+	/**
+	 * If control unit is paused, it records this status.
+	 */
+	private boolean paused = false;
+	/**
+	 * Cables on the ports, output ports in the order of the definition.
+	 */
+	private Cable[] outputs;
+	private Cable opcode;
+	private Cable pause;
+	private Cable reset;
+	private MachineObserver observer;
+	/**
+	 * Records states and transitions, null for none.
+	 */
+	private ControlCoverage coverage;
+	/**
+	 * Constructor. Loads file<i> controlDef.ini</i>.
+	 */
+	public ControlUnit() {
+		addInputPorts();
+		try {
+			loadFile();
+		} catch (IOException e) {
+			System.out.println("Error parsing control unit definition. Please check file existence.");
+			System.exit(-1);
+		} catch (IllegalStateException e) {
+			System.err.println("Configuration file format error:");
+			System.err.println(e.getMessage());
+			System.exit(-1);
+		}
+	}
+	/**
+	 * Constructor. Uses a definition already loaded, such as the one of another control unit.
+	 * @param definition
+	 */
+	public ControlUnit(ControlDefinition definition) {
+		addInputPorts();
+		useDefinition(definition);
+	}
+	private void addInputPorts() {
+		addPort("opcode", 7);
+		addPort("pause", 1);
+		addPort("reset", 1);
+	}
+	/**
+	 * Loads a configuration file and form all logic needed.
+	 * The parsed file is cached by {@link ConfigurationCache}, so only the first start parses it.
+	 * @throws IOException When file error.
+	 * @throws IllegalStateException When file format error.
+	 */
+	private void loadFile() throws IOException {
+		useDefinition(ConfigurationCache.load("controlDef", ResourceLoader.getDefault().open("conf/controlDef.ini"), ControlDefinition.CODEC));
+	}
+	/**
+	 * Adds output ports of the definition and goes to its default state.
+	 * @param definition
+	 */
+	private void useDefinition(ControlDefinition definition) {
+		this.definition = definition;
+		outputs = new Cable[definition.getOutputPortCount()];
+		for (int i = 0; i < outputs.length; ++i)
+			addPort(definition.getOutputPort(i), 1);
+		currentState = definition.getDefaultState();
+		cachePorts();
+	}
+	@Override
+	public void connectPort(String name, Cable cable) {
+		super.connectPort(name, cable);
+		cachePorts();
+	}
+	/**
+	 * The definition is shared. Observer and coverage are not copied.
+	 */
+	@Override
+	protected void copyState(Copies copies) {
+		outputs = new Cable[outputs.length];
+		cachePorts();
+		observer = null;
+		coverage = null;
+	}
+	/**
+	 * Keeps the cables on the ports in arrays, so each cycle needs no lookup by name.
+	 */
+	private void cachePorts() {
+		for (int i = 0; i < outputs.length; ++i)
+			outputs[i] = getPort(definition.getOutputPort(i));
+		opcode = getPort("opcode");
+		pause = getPort("pause");
+		reset = getPort("reset");
+	}
+	/**
+	 * Resets all outputs to zero.
+	 * So after calling this, we only have to set those should be 1 to 1.
+	 */
+	protected void resetOutputs() {
+		for (Cable output : outputs)
+			output.setZero();
+	}
+	/**
+	 * This is when the status changes.
+	 */
+	@Override
+	public void tick() {
+		ticked = true;
+		paused = false;
+		if (pause.getBit(0)) {
+			return;
+		}
+		int previous = currentState;
+		if (reset.getBit(0))
+			currentState = definition.getDefaultState();
+		else {
+			int op = (int) opcode.toInteger();
+			currentState = definition.nextState(currentState, op);
+			if (coverage != null)
+				coverage.taken(previous, op);
+		}
+		if (coverage != null)
+			coverage.visited(currentState);
+		if (observer != null && currentState != previous)
+			observer.controlStateChanged(definition.getStateName(previous), definition.getStateName(currentState));
+	}
+	
+	/**
+	 * The control Unit will perform an action based on current status every tick.
+	 */
+	@Override
+	public boolean evaluate(){
+		if (paused)
+			if(pause.getBit(0))
+				return false;
+			else {
+				ticked = true;
+				paused = false;
+			}
+		if (pause.getBit(0)) {
+			paused = true;
+			resetOutputs();
+			return true;
+		}
+		if (!ticked)
+			return false;
+		ticked = false;
+		resetOutputs();
+		for (int port : definition.getOutputs(currentState)) {
+			outputs[port].putValue(1);
+		}
+		return true;
+	}
+	/**
+	 * @param observer - Told of every change of state, null for none.
+	 */
+	public void setObserver(MachineObserver observer) {
+		this.observer = observer;
+	}
+	/**
+	 * @param coverage - Told of every tick, null for none. Must be of the definition in use.
+	 */
+	public void setCoverage(ControlCoverage coverage) {
+		if (coverage != null && coverage.getDefinition() != definition)
+			throw new IllegalArgumentException("Coverage of another control definition.");
+		this.coverage = coverage;
+	}
+	/**
+	 * @return Coverage being recorded, or null.
+	 */
+	public ControlCoverage getCoverage() {
+		return coverage;
+	}
+	/**
+	 * @return The control unit definition in use.
+	 */
+	public ControlDefinition getDefinition() {
+		return definition;
+	}
+	/**
+	 * @return Number of current state in {@link #getDefinition()}.
+	 */
+	public int getState() {
+		return currentState;
+	}
+	/**
+	 * @return Name of current state.
+	 */
+	public String getStateName() {
+		return definition.getStateName(currentState);
+	}
+	@Override
+	public void saveState(DataOutput out) throws IOException {
+		out.writeShort(currentState);
+		out.writeBoolean(ticked);
+		out.writeBoolean(paused);
+	}
+	@Override
+	public void loadState(DataInput in) throws IOException {
+		currentState = in.readShort();
+		ticked = in.readBoolean();
+		paused = in.readBoolean();
+	}
+	/**
+	 * One word: the state number, then ticked and paused as bits 32 and 33.
+	 */
+	@Override
+	public int getStateWordCount() {
+		return 1;
+	}
+	@Override
+	public void getStateWords(long[] to, int offset) {
+		to[offset] = currentState | (ticked ? 1L << 32 : 0) | (paused ? 1L << 33 : 0);
+	}
+	@Override
+	public void setStateWord(int index, long value) {
+		currentState = (int) value;
+		ticked = (value & 1L << 32) != 0;
+		paused = (value & 1L << 33) != 0;
+	}
+	/**
+	 * Shows current control unit status.
+	 */
+	@Override
+	public String toString() {
+		if (getPort("pause").getBit(0))
+			return "PAUSED";
+		StringBuilder sb = new StringBuilder();
+		sb.append("Current Status:\n");
+		sb.append(definition.getStateName(currentState));
+		return sb.toString();
+	}
+}
@@ -1,4 +1,7 @@
 package com.photoncat.architecturesimulator.simulator.chips;
+
+import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.Copies;
 /**
  * A demultiplexer. Takes an input and moves it to one of X outputs. The other outputs will
  * be set to 0 in all bits. <br>
@@ -16,6 +19,12 @@ package com.photoncat.architecturesimulator.simulator.chips;
  *
  */
 public class Demux extends Chip {
+	/**
+	 * Cables on the ports, kept up to date by {@link #connectPort(String, Cable)} so evaluate needs no lookup by name.
+	 */
+	private Cable[] outputs;
+	private Cable input;
+	private Cable sel;
 	/**
 	 * Constructor.
 	 * @param addressWidth
@@ -26,6 +35,24 @@ public class Demux extends Chip {
 			addPort("output" + Integer.toString(i), width);
 		addPort("input", width);
 		addPort("sel", addressWidth);
+		outputs = new Cable[1 << addressWidth];
+		cachePorts();
+	}
+	@Override
+	public void connectPort(String name, Cable cable) {
+		super.connectPort(name, cable);
+		cachePorts();
+	}
+	@Override
+	protected void copyState(Copies copies) {
+		outputs = new Cable[outputs.length];
+		cachePorts();
+	}
+	private void cachePorts() {
+		for (int i = 0; i < outputs.length; ++i)
+			outputs[i] = getPort("output" + i);
+		input = getPort("input");
+		sel = getPort("sel");
 	}
 	/**
 	 * Moves input to the selected output. Set all other outputs to 0.
@@ -33,13 +60,13 @@ public class Demux extends Chip {
 	 */
 	@Override
 	public boolean evaluate(){
-		String veryName = "output" + Long.toString(getPort("sel").toInteger());
+		long selected = sel.toInteger();
 		boolean dest = false;
-		for (String name : ports.keySet()){
-			if (name.equals(veryName)) {
-				dest |= getPort(name).assign(getPort("input"));
-			} else if (name.contains("output"))
-				dest |= getPort(name).setZero();
+		for (int i = 0; i < outputs.length; ++i) {
+			if (i == selected)
+				dest |= outputs[i].assign(input);
+			else
+				dest |= outputs[i].setZero();
 		}
 		return dest;
 	}
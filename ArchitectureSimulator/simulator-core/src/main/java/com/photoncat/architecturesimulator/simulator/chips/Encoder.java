@@ -0,0 +1,46 @@
+package com.photoncat.architecturesimulator.simulator.chips;
+
+import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.Copies;
+/**
+ * An encoder. Encodes serveral inputs into one.
+ * @author Xu Ke
+ *
+ */
+public class Encoder extends Chip{
+	/**
+	 * Cables on the ports, kept up to date by {@link #connectPort(String, Cable)} so evaluate needs no lookup by name.
+	 */
+	private Cable[] inputs;
+	private Cable output;
+	public Encoder(int width) {
+		for (int i = 0; i < (1 << width); ++i)
+			addPort("input" + i, 1);
+		addPort("output", width);
+		inputs = new Cable[1 << width];
+		cachePorts();
+	}
+	@Override
+	public void connectPort(String name, Cable cable) {
+		super.connectPort(name, cable);
+		cachePorts();
+	}
+	@Override
+	protected void copyState(Copies copies) {
+		inputs = new Cable[inputs.length];
+		cachePorts();
+	}
+	private void cachePorts() {
+		for (int i = 0; i < inputs.length; ++i)
+			inputs[i] = getPort("input" + i);
+		output = getPort("output");
+	}
+	
+	@Override
+	public boolean evaluate() {
+		for (int i = 0; i < inputs.length; ++i)
+			if (inputs[i].getBit(0))
+				return assignPort(output, i);
+		return assignPort(output, 0);	
+	}
+}
@@ -0,0 +1,128 @@
+package com.photoncat.architecturesimulator.simulator.chips;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.photoncat.architecturesimulator.simulator.Copies;
+import com.photoncat.architecturesimulator.simulator.DummyIODevice;
+import com.photoncat.architecturesimulator.simulator.IODevice;
+import com.photoncat.architecturesimulator.simulator.MachineObserver;
+
+/**
+ * The IO device bus interface.
+ * 
+ * 4 Inputs:
+ * 		* write[16]
+ * 		* port[5]
+ * 		* status[16]
+ * 		* load[1]
+ * 		* active[1] this bit is used to manipulate buffers.
+ * 1 Outputs:
+ * 		* read[16]
+ * @author Xu Ke
+ *
+ */
+public class IODevices extends Chip {
+	private IODevice devices[];
+	private MachineObserver observer;
+	public IODevices() {
+		devices = new IODevice[32];
+		for (int i = 0; i < 32; ++i) {
+			devices[i] = new DummyIODevice();
+		}
+		addPort("write", 16);
+		addPort("read", 16);
+		addPort("port", 5);
+		addPort("load", 1);
+		addPort("active", 1);
+		addPort("status", 16);
+	}
+	@Override
+	public void tick() {
+		int dev = (int) getPort("port").toInteger();
+		boolean load = getPort("load").getBit(0);
+		boolean active = getPort("active").getBit(0);
+		if (load) {
+			short word = (short)getPort("write").toInteger();
+			devices[dev].output(word);
+			if (observer != null)
+				observer.ioAccess(dev, true, word);
+		}
+		if (active) {
+			devices[dev].tick();
+			if (observer != null)
+				observer.ioAccess(dev, false, (short) 0);
+		}
+	}
+	
+	@Override
+	public boolean evaluate() {
+		boolean active = getPort("active").getBit(0);
+		boolean status = false;
+		if (active)
+			status |= assignPort("read", devices[(int) getPort("port").toInteger()].input());
+		status |= assignPort("status", devices[(int) getPort("port").toInteger()].status());
+		return status;
+	}
+	
+	/**
+	 * @param observer - Told of every device written or advanced, null for none.
+	 */
+	public void setObserver(MachineObserver observer) {
+		this.observer = observer;
+	}
+	
+	/**
+	 * The copy has its own ports, with the same devices until others are connected. The observer is not copied.
+	 */
+	@Override
+	protected void copyState(Copies copies) {
+		devices = devices.clone();
+		observer = null;
+	}
+	
+	public void connectDevice(int i, IODevice device) {
+		devices[i] = device;
+	}
+	
+	/**
+	 * Words: those of each device, in port order. Devices must all be connected before the count is taken.
+	 */
+	@Override
+	public int getStateWordCount() {
+		int count = 0;
+		for (IODevice device : devices)
+			count += device.getStateWordCount();
+		return count;
+	}
+	@Override
+	public void getStateWords(long[] to, int offset) {
+		for (IODevice device : devices) {
+			device.getStateWords(to, offset);
+			offset += device.getStateWordCount();
+		}
+	}
+	@Override
+	public void setStateWord(int index, long value) {
+		for (IODevice device : devices) {
+			if (index < device.getStateWordCount()) {
+				device.setStateWord(index, value);
+				return;
+			}
+			index -= device.getStateWordCount();
+		}
+	}
+	
+	@Override
+	public void saveState(DataOutput out) throws IOException {
+		for (IODevice device : devices)
+			device.saveState(out);
+	}
+	
+	@Override
+	public void loadState(DataInput in) throws IOException {
+		for (IODevice device : devices)
+			device.loadState(in);
+	}
+}
@@ -1,5 +1,9 @@
 package com.photoncat.architecturesimulator.simulator.chips;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * A simulated bulb, which can be on and off, indicating its input. It's going to take a bit input that is
  * either true or false, indicating whether it is to be turned to on or off.
@@ -29,4 +33,24 @@ public class IndicatorBulb extends Chip {
 		status = getPort("input").getBit(0);
 		return false;
 	}
+	@Override
+	public void saveState(DataOutput out) throws IOException {
+		out.writeBoolean(status);
+	}
+	@Override
+	public void loadState(DataInput in) throws IOException {
+		status = in.readBoolean();
+	}
+	@Override
+	public int getStateWordCount() {
+		return 1;
+	}
+	@Override
+	public void getStateWords(long[] to, int offset) {
+		to[offset] = status ? 1 : 0;
+	}
+	@Override
+	public void setStateWord(int index, long value) {
+		status = value != 0;
+	}
 }
@@ -1,8 +1,7 @@
 package com.photoncat.architecturesimulator.simulator.chips;
 
-import java.util.Map.Entry;
-
 import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.Copies;
 /**
  * Provides a base for logic gates(and/or, or so on).
  * 
@@ -21,6 +20,11 @@ import com.photoncat.architecturesimulator.simulator.Cable;
  *
  */
 public abstract class LogicGateBase extends Chip {
+	/**
+	 * Cables on the ports, kept up to date by {@link #connectPort(String, Cable)} so evaluate needs no lookup by name.
+	 */
+	private Cable[] inputs;
+	private Cable output;
 	/**
 	 * Constructor. 
 	 * @param width The width of input and output.
@@ -32,6 +36,23 @@ public abstract class LogicGateBase extends Chip {
 			addPort("input" + i, width);
 		}
 		addPort("output", width);
+		inputs = new Cable[count];
+		cachePorts();
+	}
+	@Override
+	public void connectPort(String name, Cable cable) {
+		super.connectPort(name, cable);
+		cachePorts();
+	}
+	@Override
+	protected void copyState(Copies copies) {
+		inputs = new Cable[inputs.length];
+		cachePorts();
+	}
+	private void cachePorts() {
+		for (int i = 0; i < inputs.length; ++i)
+			inputs[i] = getPort("input" + i);
+		output = getPort("output");
 	}
 	/**
 	 * Process logic operation between inputs. 
@@ -41,12 +62,9 @@ public abstract class LogicGateBase extends Chip {
 	@Override
 	public boolean evaluate() {
 		long result = getBase();
-		for (Entry<String, Cable> name : ports.entrySet()) {
-			if (name.getKey().contains("input")) {
-				result = process(result, name.getValue().toInteger());
-			}
-		}
-		return assignPort("output", result);
+		for (Cable input : inputs)
+			result = process(result, input.toInteger());
+		return assignPort(output, result);
 	}
 	/**
 	 * Provides a operate base.
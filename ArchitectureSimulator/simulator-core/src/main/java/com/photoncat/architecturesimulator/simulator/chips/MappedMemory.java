@@ -0,0 +1,235 @@
+package com.photoncat.architecturesimulator.simulator.chips;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+import com.photoncat.architecturesimulator.simulator.Copies;
+
+import static com.photoncat.architecturesimulator.simulator.util.ExceptionHandling.panic;
+
+/**
+ * A memory whose words live in a memory mapped file instead of the heap.<br>
+ * Words are stored big endian, two bytes each, the same way as on a card.<br>
+ *
+ * There are two modes:<br>
+ * 		* private (0), the file is opened read only and mapped as far as it goes, up to the address space.
+ * 					Written words are kept on the heap, words past the end of the file read as 0, and the file
+ * 					is never written, so many machines can share one read only image through the page cache.<br>
+ * 		* shared (1), writes go through to the file, so memory survives restarts. The file is grown to
+ * 					fit the whole address space if it is shorter.<br>
+ *
+ * Write generations are kept for written words only, and words put back to never written since, in a small
+ * hash table, so a mapping costs heap in proportion to the words written, and so do snapshots.
+ *
+ * In <i>chipsDef.ini</i>:<br>
+ * 		memory : MappedMemory, 12, "guest.img", 1
+ *
+ * @author Xu Ke
+ *
+ */
+public class MappedMemory extends Memory {
+	/**
+	 * The mapped bytes. {@link Memory#data} is a short view of it.
+	 */
+	protected MappedByteBuffer mapping;
+	private final boolean shared;
+	/**
+	 * Written words: open addressing on the address, with linear probing. A key is the address plus 1,
+	 * 0 for a free slot.
+	 */
+	private int[] keys = new int[64];
+	private long[] generations = new long[64];
+	/**
+	 * The word for private mappings. The word before the first write for shared ones, as the file holds
+	 * the word.
+	 */
+	private short[] words = new short[64];
+	private int entries = 0;
+	/**
+	 * Constructor. Creating a 12-bit addressed private mapping of the file.
+	 * @param path - Image file path.
+	 */
+	public MappedMemory(String path) {
+		this(12, path);
+	}
+	/**
+	 * Constructor. Creating a width-bit addressed private mapping of the file.
+	 * @param width
+	 * @param path - Image file path.
+	 */
+	public MappedMemory(int width, String path) {
+		this(width, path, 0);
+	}
+	/**
+	 * Constructor. Creating a width-bit addressed mapping of the file.
+	 * @param width
+	 * @param path - Image file path.
+	 * @param shared - 1 if writes should go through to the file, 0 if they should stay private.
+	 */
+	public MappedMemory(int width, String path, int shared) {
+		this(width, map(path, 1 << width, shared != 0), shared != 0);
+	}
+	/**
+	 * Constructor. Creating a width-bit addressed memory on top of a mapping.
+	 * @param width
+	 * @param mapping
+	 * @param shared
+	 */
+	private MappedMemory(int width, MappedByteBuffer mapping, boolean shared) {
+		super(width, mapping.asShortBuffer());
+		this.mapping = mapping;
+		this.shared = shared;
+	}
+	/**
+	 * Maps the file into memory.
+	 * @param path
+	 * @param words - How many words to map.
+	 * @param shared
+	 * @return The mapped bytes.
+	 * @throws IllegalStateException When the file cannot be mapped.
+	 */
+	private static MappedByteBuffer map(String path, int words, boolean shared) {
+		MappedByteBuffer buffer = null;
+		// The mapping stays valid after the channel is closed.
+		try (RandomAccessFile file = new RandomAccessFile(path, shared ? "rw" : "r")) {
+			if (shared)
+				buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 2L * words);
+			else
+				buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, Math.min(file.length() & ~1L, 2L * words));
+		} catch (IOException e) {
+			panic("Cannot map memory image \"" + path + "\": " + e.getMessage());
+		}
+		return buffer;
+	}
+	/**
+	 * @param address
+	 * @return The word of the file, 0 past its end.
+	 */
+	private int imageWord(int address) {
+		return address < data.limit() ? data.get(address) & 0xFFFF : 0;
+	}
+	@Override
+	protected int readWord(int address) {
+		if (shared)
+			return data.get(address) & 0xFFFF;
+		int slot = find(address);
+		return slot >= 0 ? words[slot] & 0xFFFF : imageWord(address);
+	}
+	@Override
+	protected void writeWord(int address, int value) {
+		if (shared)
+			data.put(address, (short) value);
+		else
+			words[find(address)] = (short) value;
+	}
+	@Override
+	protected int unwrittenWord(int address) {
+		if (!shared)
+			return imageWord(address);
+		int slot = find(address);
+		return slot >= 0 ? words[slot] & 0xFFFF : data.get(address) & 0xFFFF;
+	}
+	@Override
+	protected long getWrittenAt(int address) {
+		int slot = find(address);
+		return slot >= 0 ? generations[slot] : 0;
+	}
+	@Override
+	protected void setWrittenAt(int address, long generation) {
+		int slot = find(address);
+		if (generation == 0) {
+			if (slot >= 0)
+				remove(slot);
+			return;
+		}
+		if (slot >= 0) {
+			generations[slot] = generation;
+			return;
+		}
+		if ((entries + 1) * 2 > keys.length)
+			grow();
+		slot = home(address);
+		while (keys[slot] != 0)
+			slot = (slot + 1) & (keys.length - 1);
+		keys[slot] = address + 1;
+		generations[slot] = generation;
+		words[slot] = (short) imageWord(address);
+		entries++;
+	}
+	private int home(int address) {
+		int hash = address * 0x9E3779B1;
+		return (hash ^ hash >>> 16) & (keys.length - 1);
+	}
+	/**
+	 * @param address
+	 * @return Slot of the address, -1 if it was never written.
+	 */
+	private int find(int address) {
+		for (int slot = home(address); keys[slot] != 0; slot = (slot + 1) & (keys.length - 1))
+			if (keys[slot] == address + 1)
+				return slot;
+		return -1;
+	}
+	/**
+	 * Frees a slot, moving back the entries after it that could not be in their home slot.
+	 * @param slot
+	 */
+	private void remove(int slot) {
+		int mask = keys.length - 1;
+		int free = slot;
+		for (int next = (slot + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+			int home = home(keys[next] - 1);
+			// Move it if its home is not between the free slot and it, cyclically.
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				generations[free] = generations[next];
+				words[free] = words[next];
+				free = next;
+			}
+		}
+		keys[free] = 0;
+		entries--;
+	}
+	private void grow() {
+		int[] oldKeys = keys;
+		long[] oldGenerations = generations;
+		short[] oldWords = words;
+		keys = new int[oldKeys.length * 2];
+		generations = new long[keys.length];
+		words = new short[keys.length];
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldKeys[i] == 0)
+				continue;
+			int slot = home(oldKeys[i] - 1);
+			while (keys[slot] != 0)
+				slot = (slot + 1) & (keys.length - 1);
+			keys[slot] = oldKeys[i];
+			generations[slot] = oldGenerations[i];
+			words[slot] = oldWords[i];
+		}
+	}
+	/**
+	 * The copy gets its own written words. It maps the same file: a private copy reads the same image, and a
+	 * shared copy writes to the same file, as a second mapping of it would.
+	 */
+	@Override
+	protected void copyState(Copies copies) {
+		super.copyState(copies);
+		keys = keys.clone();
+		generations = generations.clone();
+		words = words.clone();
+	}
+	@Override
+	protected ShortBuffer copyStorage() {
+		return mapping.asShortBuffer();
+	}
+	/**
+	 * Flushes written words to the file. Only meaningful for shared mappings.
+	 */
+	public void force() {
+		mapping.force();
+	}
+}
@@ -0,0 +1,571 @@
+package com.photoncat.architecturesimulator.simulator.chips;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import com.photoncat.architecturesimulator.simulator.Copies;
+import com.photoncat.architecturesimulator.simulator.tools.AssemblyCompiler.CompiledProgram;
+
+/**
+ * The memory. It's abstracted as a black box that supports read/load by byte, a.k.a. a memory interface.<br>
+ * There is a build in cache inside this interface. It's a magical cache! implemented by MAGIC!<br>
+ * A memory will have three inputs:<br>
+ * 		* load[1]<br>
+ * 		* address[12]<br>
+ * 		* input[16] <br>
+ * A memory will have one output:<br>
+ * 		* output[16]
+ * 
+ * @author Xu Ke
+ *
+ */
+public class Memory extends Chip {
+	/** 
+	 * Memory data stored in a big buffer, one short per word. A buffer lets subclasses put the words
+	 * somewhere else than the heap, see {@link MappedMemory}.
+	 */
+	protected ShortBuffer data;
+	protected static class CacheEntry {
+		public int tag;
+		public boolean valid = false;
+	}
+	protected CacheEntry[] cache;
+	protected int cachePointer = 0;
+	/**
+	 * Told about every word written, before it is written.
+	 */
+	public interface WriteObserver {
+		/**
+		 * @param address
+		 * @param oldValue - Word before the write.
+		 * @param oldWrittenAt - Write generation of the word before the write, 0 if never written.
+		 */
+		void beforeWrite(int address, int oldValue, long oldWrittenAt);
+	}
+	private WriteObserver writeObserver;
+	/**
+	 * Constructor. Creating a 12-bit addressed memory (4096 words, addressing from 0 to 4095).
+	 */
+	public Memory(){
+		this(12);
+	}
+	/**
+	 * Constructor. Creating a width-bit addressed memory.
+	 * @param width
+	 */
+	public Memory(int width) {
+		this(width, ShortBuffer.allocate(1 << width));
+		writtenAt = new long[size];
+	}
+	/**
+	 * Constructor. Creating a width-bit addressed memory on top of the given storage. The subclass keeps
+	 * track of write generations itself, see {@link #getWrittenAt(int)}.
+	 * @param width
+	 * @param storage - Word storage, as the subclass reads it through {@link #readWord(int)}.
+	 */
+	protected Memory(int width, ShortBuffer storage) {
+		data = storage;
+		size = 1 << width;
+		touched = new int[16];
+		addPort("load", 1);
+		addPort("address", 1 << width);
+		addPort("input", 16);
+		addPort("output", 16);
+		cache = new CacheEntry[16];
+		for (int i = 0; i < 16; ++i)
+			cache[i] = new CacheEntry();
+	}
+	/**
+	 * When timer ticks, if input[0] is true, we move data of input to data[address].
+	 */
+	@Override
+	public void tick(){
+		if (getPort("load").getBit(0)) {
+			int address = (int) getPort("address").toInteger();
+			if (outofRange(address))
+				return; // Or throw.
+			if (writeObserver != null)
+				writeObserver.beforeWrite(address, readWord(address), Math.max(0, getWrittenAt(address)));
+			markWritten(address);
+			writeWord(address, (int) getPort("input").toInteger());
+		}
+		loadCache((int)getPort("address").toInteger() >> 2);
+	}
+	/**
+	 * Checks if target address is out of range.
+	 * @param address
+	 * @return
+	 */
+	private boolean outofRange(int address) {
+		if (address < 0)
+			return true;
+		return address >= size;
+	}
+	/**
+	 * When evaluates, we move specified data to output.
+	 * @return true if value changed.
+	 */
+	@Override
+	public boolean evaluate(){
+		int address = (int) getPort("address").toInteger();
+		if (outofRange(address))
+			return false; // Or throw.
+		return assignPort("output", readWord(address));
+	}
+	
+	/**
+	 * Number of words.
+	 */
+	protected final int size;
+	/**
+	 * Only those data assigned will be output during toString.
+	 * This array stores the generation each word was last changed at: the generation it was written at, its
+	 * negation if it was put back to never written since, or 0 if it has never been written.
+	 * Null when a subclass keeps track of it.
+	 */
+	protected long[] writtenAt;
+	/**
+	 * Addresses of all words ever written, kept sorted so dumps come out in address order.
+	 */
+	protected int[] touched;
+	/**
+	 * How many entries of touched are in use.
+	 */
+	protected int touchedCount = 0;
+	/**
+	 * Write log: the address and generation of changes, in generation order, so words changed after a
+	 * generation are found without looking at older ones. An entry is stale when its word was changed again
+	 * since; stale entries are dropped when the log fills up. The latest change of every written word is
+	 * always in the log, and no entry is newer than {@link #generation}.
+	 */
+	private int[] logAddresses = new int[16];
+	private long[] logGenerations = new long[16];
+	private int logCount = 0;
+	/**
+	 * Write generation. Grows by one on every write, and on every word put back by an undo, a load or a reset.
+	 */
+	protected long generation = 0;
+	/**
+	 * Cached text of the data part of toString, and the generation it was built at.
+	 */
+	private String dataDump = null;
+	private long dataDumpGeneration = -1;
+	/**
+	 * Records a write to address, so it shows up in dumps and in {@link #getChangedAddresses(long)}.
+	 * @param address
+	 */
+	protected void markWritten(int address) {
+		if (getWrittenAt(address) <= 0)
+			insertTouched(address);
+		logChange(address, ++generation);
+	}
+	/**
+	 * Stamps a word with the current generation and logs it.
+	 * @param address
+	 * @param writtenAt - The current generation, negated if the word is now never written.
+	 */
+	private void logChange(int address, long writtenAt) {
+		setWrittenAt(address, writtenAt);
+		if (logCount == logAddresses.length)
+			compactLog();
+		logAddresses[logCount] = address;
+		logGenerations[logCount] = generation;
+		logCount++;
+	}
+	/**
+	 * Inserts the first write of a word into the sorted index.
+	 * @param address
+	 */
+	private void insertTouched(int address) {
+		int pos = Arrays.binarySearch(touched, 0, touchedCount, address);
+		pos = -pos - 1;
+		if (touchedCount == touched.length)
+			touched = Arrays.copyOf(touched, touched.length * 2);
+		System.arraycopy(touched, pos, touched, pos + 1, touchedCount - pos);
+		touched[pos] = address;
+		touchedCount++;
+	}
+	private void removeTouched(int address) {
+		int pos = Arrays.binarySearch(touched, 0, touchedCount, address);
+		System.arraycopy(touched, pos + 1, touched, pos, touchedCount - pos - 1);
+		touchedCount--;
+	}
+	/**
+	 * @param i
+	 * @return If log entry i is the latest change of its word.
+	 */
+	private boolean isLive(int i) {
+		return Math.abs(getWrittenAt(logAddresses[i])) == logGenerations[i];
+	}
+	/**
+	 * Drops stale log entries, and makes room if the log is still more than half full.
+	 */
+	private void compactLog() {
+		int live = 0;
+		for (int i = 0; i < logCount; ++i) {
+			if (!isLive(i))
+				continue;
+			logAddresses[live] = logAddresses[i];
+			logGenerations[live] = logGenerations[i];
+			live++;
+		}
+		logCount = live;
+		if (live * 2 >= logAddresses.length) {
+			logAddresses = Arrays.copyOf(logAddresses, logAddresses.length * 2);
+			logGenerations = Arrays.copyOf(logGenerations, logGenerations.length * 2);
+		}
+	}
+	/**
+	 * @param since
+	 * @return Index of the first log entry written after since.
+	 */
+	private int logIndexAfter(long since) {
+		int low = 0;
+		int high = logCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (logGenerations[middle] <= since)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+	/**
+	 * @return Current write generation. It only grows, so it can be handed back to {@link #getChangedAddresses(long)} later.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+	/**
+	 * Gets the words changed after a given generation: written, or put back by an undo, a load or a reset.
+	 * Only the log entries after since are looked at, so the cost follows the changes since, not the words
+	 * ever written.
+	 * @param since - A generation returned by {@link #getGeneration()} earlier. 0 for all words ever changed.
+	 * @return Addresses changed after since, in ascending order.
+	 */
+	public int[] getChangedAddresses(long since) {
+		int from = logIndexAfter(since);
+		int[] result = new int[logCount - from];
+		int count = 0;
+		for (int i = from; i < logCount; ++i)
+			if (isLive(i))
+				result[count++] = logAddresses[i];
+		result = Arrays.copyOf(result, count);
+		Arrays.sort(result);
+		return result;
+	}
+	/**
+	 * Gets the value stored at address.
+	 * @param address
+	 * @return The word at address.
+	 */
+	public int getValue(int address) {
+		return readWord(address);
+	}
+	/**
+	 * @param observer - Observer to tell about writes, or null for none.
+	 */
+	public void setWriteObserver(WriteObserver observer) {
+		writeObserver = observer;
+	}
+	/**
+	 * Puts a word back as it was before a write, including whether it was ever written.
+	 * Writes must be undone newest first. Nobody is told about this write.<br>
+	 * The word is stamped with a new generation rather than the one it had, so the generation keeps growing
+	 * and {@link #getChangedAddresses(long)} tells about the word put back.
+	 * @param address
+	 * @param value
+	 * @param wasWrittenAt - Write generation the word had, 0 for never written. Only whether it is 0 matters.
+	 */
+	public void restoreWord(int address, int value, long wasWrittenAt) {
+		putBack(address, value, wasWrittenAt != 0);
+	}
+	/**
+	 * Puts a word back, stamped with a new generation. Nobody is told about this write.
+	 * @param address
+	 * @param value
+	 * @param written - If the word should be written, false to put it back to never written.
+	 */
+	private void putBack(int address, int value, boolean written) {
+		if (written) {
+			if (getWrittenAt(address) <= 0)
+				insertTouched(address);
+			logChange(address, ++generation);
+			writeWord(address, value);
+		} else if (getWrittenAt(address) > 0) {
+			writeWord(address, value);
+			removeTouched(address);
+			logChange(address, -++generation);
+		}
+	}
+	/**
+	 * Written words at the baseline, sorted by address, see {@link #markBaseline()}.
+	 */
+	private int[] baselineAddresses = new int[0];
+	private short[] baselineValues = new short[0];
+	/**
+	 * Generation after which words may differ from the baseline.
+	 */
+	private long baselineGeneration = 0;
+	/**
+	 * Records the words as they are now, so {@link #resetToBaseline()} can put them back.
+	 * Only written words are kept.
+	 */
+	public void markBaseline() {
+		baselineAddresses = Arrays.copyOf(touched, touchedCount);
+		baselineValues = new short[touchedCount];
+		for (int i = 0; i < touchedCount; ++i)
+			baselineValues[i] = (short) readWord(touched[i]);
+		baselineGeneration = generation;
+	}
+	/**
+	 * Puts back the words changed since {@link #markBaseline()}, found in the write log after the baseline
+	 * generation, so the cost follows the changes since. The words put back are stamped with new generations,
+	 * and the baseline generation moves past them, as the words are all back to the baseline.
+	 * Nobody is told about these writes.
+	 * @return Number of words put back.
+	 */
+	public int resetToBaseline() {
+		int from = logIndexAfter(baselineGeneration);
+		int[] changed = new int[logCount - from];
+		int count = 0;
+		for (int i = from; i < logCount; ++i)
+			if (isLive(i))
+				changed[count++] = logAddresses[i];
+		for (int i = 0; i < count; ++i) {
+			int address = changed[i];
+			int pos = Arrays.binarySearch(baselineAddresses, address);
+			if (pos >= 0)
+				putBack(address, baselineValues[pos] & 0xFFFF, true);
+			else
+				putBack(address, unwrittenWord(address), false);
+		}
+		baselineGeneration = generation;
+		return count;
+	}
+	/**
+	 * Words: the cache pointer, and 16 cache entries as valid bit 32 and the tag.
+	 * Words themselves are recorded through {@link WriteObserver}. The write generation is not a state word,
+	 * as putting it back would make it go back.
+	 */
+	@Override
+	public int getStateWordCount() {
+		return 1 + cache.length;
+	}
+	@Override
+	public void getStateWords(long[] to, int offset) {
+		to[offset] = cachePointer;
+		for (int i = 0; i < cache.length; ++i)
+			to[offset + 1 + i] = (cache[i].valid ? 1L << 32 : 0) | (cache[i].tag & 0xFFFFFFFFL);
+	}
+	@Override
+	public void setStateWord(int index, long value) {
+		if (index == 0) {
+			cachePointer = (int) value;
+		} else {
+			cache[index - 1].valid = (value & 1L << 32) != 0;
+			cache[index - 1].tag = (int) value;
+		}
+	}
+	/**
+	 * Writes cache tags and all written words, in address order. Words never written are left out, as they
+	 * are 0, or the image of a {@link MappedMemory}. Write generations are left out too: they only tell what
+	 * changed when, so the same words always give the same bytes.
+	 */
+	@Override
+	public void saveState(DataOutput out) throws IOException {
+		out.writeByte(cachePointer);
+		for (CacheEntry entry : cache) {
+			out.writeBoolean(entry.valid);
+			out.writeInt(entry.tag);
+		}
+		out.writeInt(touchedCount);
+		for (int i = 0; i < touchedCount; ++i) {
+			out.writeInt(touched[i]);
+			out.writeShort(readWord(touched[i]));
+		}
+	}
+	/**
+	 * Words written after the snapshot go back to never written, and the words of the snapshot are written
+	 * again. All of them are stamped with new generations, so the generation keeps growing and
+	 * {@link #getChangedAddresses(long)} tells about them.
+	 */
+	@Override
+	public void loadState(DataInput in) throws IOException {
+		for (int i = 0; i < touchedCount; ++i) {
+			writeWord(touched[i], unwrittenWord(touched[i]));
+			logChange(touched[i], -++generation);
+		}
+		touchedCount = 0;
+		cachePointer = in.readByte();
+		for (CacheEntry entry : cache) {
+			entry.valid = in.readBoolean();
+			entry.tag = in.readInt();
+		}
+		int count = in.readInt();
+		for (int i = 0; i < count; ++i) {
+			int address = in.readInt();
+			// Addresses come in order, so each goes at the end of touched.
+			markWritten(address);
+			writeWord(address, in.readShort() & 0xFFFF);
+		}
+	}
+	/**
+	 * The copy gets its own words, cache, written words and write log. The baseline arrays are shared, as
+	 * {@link #markBaseline()} makes new ones instead of changing them. The write observer is not copied.
+	 */
+	@Override
+	protected void copyState(Copies copies) {
+		data = copyStorage();
+		CacheEntry[] originalCache = cache;
+		cache = new CacheEntry[originalCache.length];
+		for (int i = 0; i < cache.length; ++i) {
+			cache[i] = new CacheEntry();
+			cache[i].valid = originalCache[i].valid;
+			cache[i].tag = originalCache[i].tag;
+		}
+		if (writtenAt != null)
+			writtenAt = writtenAt.clone();
+		touched = touched.clone();
+		logAddresses = logAddresses.clone();
+		logGenerations = logGenerations.clone();
+		writeObserver = null;
+	}
+	/**
+	 * @return Storage for a copy, holding the same words.
+	 */
+	protected ShortBuffer copyStorage() {
+		ShortBuffer source = data.duplicate();
+		source.clear();
+		ShortBuffer copy = ShortBuffer.allocate(source.capacity());
+		copy.put(source);
+		copy.clear();
+		return copy;
+	}
+	/**
+	 * Reads a word from storage.
+	 * @param address
+	 * @return The word, unsigned.
+	 */
+	protected int readWord(int address) {
+		return data.get(address) & 0xFFFF;
+	}
+	/**
+	 * Writes a word to storage. Only called for words marked written, after {@link #setWrittenAt(int, long)}.
+	 * @param address
+	 * @param value
+	 */
+	protected void writeWord(int address, int value) {
+		data.put(address, (short) value);
+	}
+	/**
+	 * @param address
+	 * @return The word at address if it had never been written.
+	 */
+	protected int unwrittenWord(int address) {
+		return 0;
+	}
+	/**
+	 * @param address
+	 * @return Generation the word was last changed at: the generation it was written at, its negation if it
+	 * was put back to never written since, 0 if never written.
+	 */
+	protected long getWrittenAt(int address) {
+		return writtenAt[address];
+	}
+	/**
+	 * @param address
+	 * @param generation - Generation the word was last changed at, as returned by {@link #getWrittenAt(int)}.
+	 */
+	protected void setWrittenAt(int address, long generation) {
+		writtenAt[address] = generation;
+	}
+	/**
+	 * @return Number of words.
+	 */
+	public int getSize() {
+		return size;
+	}
+	/**
+	 * Turns chip value into a readable way.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Cache Status:\n");
+		for (int i = 0; i < 16; ++i) {
+			if (!cache[i].valid)
+				continue;
+			int tag = cache[i].tag;
+			sb.append("Tag ");
+			sb.append(tag);
+			sb.append(": \n\t");
+			for (int j = tag << 2; j < (cache[i].tag << 2) + 4; ++j) {
+				sb.append(String.format("%04X", readWord(j)));
+				sb.append(" ");
+			}
+			sb.append("\n");
+		}
+		sb.append(getDataDump());
+		return sb.toString();
+	}
+	/**
+	 * Builds the data part of toString. Only rebuilt when something has been written since last time.
+	 * @return Readable text of all written words.
+	 */
+	private String getDataDump() {
+		if (dataDumpGeneration == generation)
+			return dataDump;
+		StringBuilder sb = new StringBuilder();
+		sb.append("Memory chip data:\n");
+		for (int i = 0; i < touchedCount; ++i) {
+			sb.append(touched[i]);
+			sb.append(": ");
+			sb.append(readWord(touched[i]));
+			sb.append("\n");
+		}
+		dataDump = sb.toString();
+		dataDumpGeneration = generation;
+		return dataDump;
+	}
+	/**
+	 * Put value to desired address.
+	 * @param address
+	 * @param value
+	 */
+	public void putValue(int address, int value) {
+		if (outofRange(address))
+			throw new IndexOutOfBoundsException("Address out of memory: " + address);
+		if (writeObserver != null)
+			writeObserver.beforeWrite(address, readWord(address), Math.max(0, getWrittenAt(address)));
+		markWritten(address);
+		writeWord(address, value);
+	}
+	/**
+	 * Load a program into memory.
+	 * @param address The starting address in memory. 
+	 * @param code The compiled program. {@link com.photoncat.architecturesimulator.simulator.tools.AssemblyCompiler}
+	 * @throws IndexOutOfBoundsException When the program does not fit, before any word is written.
+	 */
+	public void loadProgram(int address, CompiledProgram code) {
+		if (address < 0 || address > size - code.size())
+			throw new IndexOutOfBoundsException("Program of " + code.size() + " words at " + address + " does not fit in memory of " + size);
+		for (Short ins : code) {
+			putValue(address++, ins);
+		}
+	}
+	private void loadCache(int tag) {
+		for (int i = 0; i < 16; ++i)
+			if (cache[i].valid)
+				if (cache[i].tag == tag)
+					return;
+		cache[cachePointer].valid = true;
+		cache[cachePointer].tag = tag;
+		cachePointer++;
+		cachePointer %= 16;
+	}
+}
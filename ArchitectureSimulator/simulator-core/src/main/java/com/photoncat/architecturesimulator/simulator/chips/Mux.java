@@ -1,4 +1,7 @@
 package com.photoncat.architecturesimulator.simulator.chips;
+
+import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.Copies;
 /**
  * A multiplexer. Takes X inputs and select one of them.<br>
  * A multiplexer doesn't store anything, so it does nothing during tick.<br>
@@ -19,6 +22,12 @@ package com.photoncat.architecturesimulator.simulator.chips;
  *
  */
 public class Mux extends Chip {
+	/**
+	 * Cables on the ports, kept up to date by {@link #connectPort(String, Cable)} so evaluate needs no lookup by name.
+	 */
+	private Cable[] inputs;
+	private Cable sel;
+	private Cable output;
 	/**
 	 * Constructor.
 	 * @param addressWidth
@@ -29,12 +38,30 @@ public class Mux extends Chip {
 			addPort("input" + Integer.toString(i), width);
 		addPort("sel", addressWidth);
 		addPort("output", width);
+		inputs = new Cable[1 << addressWidth];
+		cachePorts();
+	}
+	@Override
+	public void connectPort(String name, Cable cable) {
+		super.connectPort(name, cable);
+		cachePorts();
+	}
+	@Override
+	protected void copyState(Copies copies) {
+		inputs = new Cable[inputs.length];
+		cachePorts();
+	}
+	private void cachePorts() {
+		for (int i = 0; i < inputs.length; ++i)
+			inputs[i] = getPort("input" + i);
+		sel = getPort("sel");
+		output = getPort("output");
 	}
 	/**
 	 * Moves the selected input to output.
 	 */
 	@Override
 	public boolean evaluate(){
-		return getPort("output").assign(getPort("input" + Long.toString(getPort("sel").toInteger())));
+		return output.assign(inputs[(int) sel.toInteger()]);
 	}
 }
@@ -1,5 +1,9 @@
 package com.photoncat.architecturesimulator.simulator.chips;
 
+import java.util.Collection;
+
+import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.Copies;
 import com.photoncat.architecturesimulator.simulator.SingleCable;
 
 /**
@@ -44,6 +48,16 @@ public class NumberedSwitch extends Chip {
 	public boolean evaluate() {
 		return getPort("output").assign(value);
 	}
-
-	
+	@Override
+	protected void copyState(Copies copies) {
+		value = (SingleCable) copies.of(value);
+	}
+	/**
+	 * The stored value is a cable too, so snapshots and history keep it with the other cables.
+	 */
+	@Override
+	public void collectCables(Collection<Cable> out) {
+		super.collectCables(out);
+		out.add(value);
+	}
 }
@@ -1,6 +1,7 @@
 package com.photoncat.architecturesimulator.simulator.chips;
 
 import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.Copies;
 import com.photoncat.architecturesimulator.simulator.SingleCable;
 
 /**
@@ -58,6 +59,15 @@ public class RegisterFile extends ChipsSet {
 		addChipPortRelation("address", demuxForLoad, "sel");
 		addChipPortRelation("load", demuxForLoad, "input");
 	}
+	@Override
+	protected void copyState(Copies copies) {
+		super.copyState(copies);
+		muxForOutput = (Mux) copies.of(muxForOutput);
+		demuxForLoad = (Demux) copies.of(demuxForLoad);
+		data = data.clone();
+		for (int i = 0; i < data.length; ++i)
+			data[i] = (ClockRegister) copies.of(data[i]);
+	}
 	/**
 	 * Sets a value for a selected register.
 	 * @param index - To select the register.
@@ -66,6 +76,19 @@ public class RegisterFile extends ChipsSet {
 	public void setValue(int index, long value) {
 		data[index].setValue(value);
 	}
+	/**
+	 * @param index - To select the register.
+	 * @return Value in the register.
+	 */
+	public long getValue(int index) {
+		return data[index].getValue();
+	}
+	/**
+	 * @return Number of registers.
+	 */
+	public int getSize() {
+		return data.length;
+	}
 	/**
 	 * Provide a nice readable text.
 	 */
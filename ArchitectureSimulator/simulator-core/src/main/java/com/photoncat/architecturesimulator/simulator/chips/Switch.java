@@ -1,6 +1,9 @@
 package com.photoncat.architecturesimulator.simulator.chips;
 
+import java.util.Collection;
+
 import com.photoncat.architecturesimulator.simulator.Cable;
+import com.photoncat.architecturesimulator.simulator.Copies;
 import com.photoncat.architecturesimulator.simulator.SingleCable;
 
 /**
@@ -38,4 +41,16 @@ public class Switch extends Chip {
 	public boolean evaluate() {
 		return getPort("output").assign(status);
 	}
+	@Override
+	protected void copyState(Copies copies) {
+		status = copies.of(status);
+	}
+	/**
+	 * The stored value is a cable too, so snapshots and history keep it with the other cables.
+	 */
+	@Override
+	public void collectCables(Collection<Cable> out) {
+		super.collectCables(out);
+		out.add(status);
+	}
 }
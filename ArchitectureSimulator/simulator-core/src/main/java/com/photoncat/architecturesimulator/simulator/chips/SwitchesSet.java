@@ -2,6 +2,7 @@ package com.photoncat.architecturesimulator.simulator.chips;
 
 import com.photoncat.architecturesimulator.simulator.Cable;
 import com.photoncat.architecturesimulator.simulator.CablePartialAdapter;
+import com.photoncat.architecturesimulator.simulator.Copies;
 
 /**
  * A set of switches, which all can separately be on and off. It's going to output either true or false, depending 
@@ -35,6 +36,14 @@ public class SwitchesSet extends ChipsSet {
 			addChip(switches[i]);
 		}
 	}
+	@Override
+	protected void copyState(Copies copies) {
+		super.copyState(copies);
+		switches = switches.clone();
+		for (int i = 0; i < switches.length; ++i)
+			switches[i] = (Switch) copies.of(switches[i]);
+		outputAdapter = (CablePartialAdapter) copies.of(outputAdapter);
+	}
 	/**
 	 * When connect port we reMother the adapter so the output goes to the right place. 
 	 */
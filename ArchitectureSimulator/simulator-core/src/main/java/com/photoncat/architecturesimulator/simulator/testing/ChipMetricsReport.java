@@ -0,0 +1,30 @@
+package com.photoncat.architecturesimulator.simulator.testing;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.chips.ChipMetrics;
+
+/**
+ * Boots a headless machine, runs it and prints {@link ChipMetrics} of its chips, the slowest first.
+ * Run with <i>-Dsimulator.chipMetrics=true</i>.
+ * @author Xu Ke
+ *
+ */
+public class ChipMetricsReport {
+	/**
+	 * Runs the report.
+	 * @param args - Optional: cycles to run, default 10000.
+	 */
+	public static void main(String[] args) {
+		if (!ChipMetrics.ENABLED) {
+			System.err.println("Chip metrics are off, run with -Dsimulator.chipMetrics=true.");
+			System.exit(-1);
+		}
+		long cycles = args.length > 0 ? Long.parseLong(args[0]) : 10000;
+		Machine machine = new Machine(true);
+		machine.IPLMagic();
+		machine.evaluate();
+		machine.getChipMetrics().reset();
+		System.out.println(machine.run(cycles));
+		System.out.print(machine.getChipMetrics().report());
+	}
+}
@@ -0,0 +1,33 @@
+package com.photoncat.architecturesimulator.simulator.testing;
+
+import java.io.IOException;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.RunResult;
+import com.photoncat.architecturesimulator.simulator.chips.ControlCoverage;
+
+/**
+ * Runs the guest programs of {@link GuestBenchmark} to HALT, gathering one {@link ControlCoverage} of them
+ * all, and prints what of <i>controlDef.ini</i> they never exercised.
+ * @author Xu Ke
+ *
+ */
+public class ControlCoverageReport {
+	/**
+	 * Runs the report.
+	 * @param args - Optional: names of the programs to run, default all.
+	 */
+	public static void main(String[] args) throws IOException {
+		String[] names = args.length > 0 ? args : GuestBenchmark.PROGRAMS;
+		ControlCoverage coverage = null;
+		for (String name : names) {
+			Machine machine = GuestBenchmark.prepare(name, GuestBenchmark.load(name));
+			if (coverage == null)
+				coverage = machine.newControlCoverage();
+			machine.setControlCoverage(coverage);
+			RunResult result = machine.runUntilHalt();
+			System.out.println(name + ": " + result);
+		}
+		System.out.print(coverage.report());
+	}
+}
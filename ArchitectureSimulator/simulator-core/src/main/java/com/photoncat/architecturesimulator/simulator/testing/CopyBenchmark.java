@@ -0,0 +1,54 @@
+package com.photoncat.architecturesimulator.simulator.testing;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+
+/**
+ * Compares making a machine with its constructor against {@link Machine#copy()} of a running one.<br>
+ *
+ * copy() clones chips and cables with their state instead of making and wiring them from the netlist,
+ * so it should take a small part of the constructor's time; the ratio is printed.
+ * @author Xu Ke
+ *
+ */
+public class CopyBenchmark {
+	/**
+	 * Runs the benchmark.
+	 * @param args - Optional: rounds to measure, default 1000.
+	 */
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		Machine original = new Machine();
+		original.IPLMagic();
+		original.evaluate();
+		original.run(1000);
+		// Warm up both ways.
+		for (int i = 0; i < rounds; ++i) {
+			construct();
+			original.copy();
+		}
+		// Each way in a loop of its own, so neither pays for collecting the garbage of the other.
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; ++i)
+			construct();
+		long constructor = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; ++i)
+			original.copy();
+		long copy = System.nanoTime() - start;
+		System.out.printf("Machine in the same state, %d rounds:%n", rounds);
+		System.out.printf("\tconstructor + IPL: %.3f ms%n", constructor / 1e6 / rounds);
+		System.out.printf("\tcopy():            %.3f ms%n", copy / 1e6 / rounds);
+		System.out.printf("\tratio:             %.2f%n", (double) copy / constructor);
+	}
+	/**
+	 * Makes a machine the way callers had to before copy(): constructor and IPL. Running it to the same
+	 * cycle would cost far more, so this is the best case for the constructor.
+	 * @return The machine.
+	 */
+	private static Machine construct() {
+		Machine machine = new Machine();
+		machine.IPLMagic();
+		machine.evaluate();
+		return machine;
+	}
+}
@@ -0,0 +1,61 @@
+package com.photoncat.architecturesimulator.simulator.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.chips.ChipFactory;
+
+/**
+ * Reports heap used per machine for several machine counts, with ports formats shared between chips
+ * and without. Numbers come from {@link Runtime} after garbage collection, so they are estimates;
+ * run with a fixed heap, such as <i>-Xms1g -Xmx1g</i>, for steadier numbers.
+ * @author Xu Ke
+ *
+ */
+public class FootprintReport {
+	/**
+	 * Runs the report.
+	 * @param args - Optional: machine counts, default 1 10 100.
+	 */
+	public static void main(String[] args) {
+		int[] counts = {1, 10, 100};
+		if (args.length > 0) {
+			counts = new int[args.length];
+			for (int i = 0; i < args.length; ++i)
+				counts[i] = Integer.parseInt(args[i]);
+		}
+		// Loads classes and configuration, which are paid once whatever the count.
+		new Machine(true);
+		System.out.println("machines\tshared KB/machine\tunshared KB/machine");
+		for (int count : counts) {
+			ChipFactory.setSharing(true);
+			long shared = bytesPerMachine(count);
+			ChipFactory.setSharing(false);
+			long unshared = bytesPerMachine(count);
+			System.out.printf("%d\t%.1f\t%.1f%n", count, shared / 1024.0, unshared / 1024.0);
+		}
+		ChipFactory.setSharing(true);
+	}
+	/**
+	 * @param count
+	 * @return Heap bytes held by each of count machines alive at once.
+	 */
+	private static long bytesPerMachine(int count) {
+		long before = usedHeap();
+		List<Machine> machines = new ArrayList<>();
+		for (int i = 0; i < count; ++i)
+			machines.add(new Machine(true));
+		long after = usedHeap();
+		// Keeps the machines alive until measured.
+		if (machines.size() != count)
+			throw new IllegalStateException();
+		return (after - before) / count;
+	}
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; ++i)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,88 @@
+package com.photoncat.architecturesimulator.simulator.testing;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.RunResult;
+import com.photoncat.architecturesimulator.simulator.chips.ClockRegister;
+import com.photoncat.architecturesimulator.simulator.chips.Memory;
+import com.photoncat.architecturesimulator.simulator.tools.AssemblyCompiler;
+import com.photoncat.architecturesimulator.simulator.util.ResourceLoader;
+
+/**
+ * Runs the guest programs in <i>conf/benchmarks</i> to HALT, and reports host cycles per second, guest
+ * instructions, cycles per instruction and wall time of each.<br>
+ *
+ * Every program is loaded at address 0 of a new headless machine and starts there. Each is run a few
+ * times, and the fastest run is reported.
+ * @author Xu Ke
+ *
+ */
+public class GuestBenchmark {
+	/**
+	 * Program names, in <i>conf/benchmarks/name.prg</i>.
+	 */
+	static final String[] PROGRAMS = {"memcopy", "bubblesort", "muldiv", "ioecho", "indexed"};
+	/**
+	 * Typed for ioecho to print back.
+	 */
+	private static final String KEYS = "The quick brown fox jumps over the lazy dog.\n";
+
+	/**
+	 * Runs the benchmark.
+	 * @param args - Optional: rounds for each program, default 3, then names of the programs to run.
+	 */
+	public static void main(String[] args) throws IOException {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		String[] names = PROGRAMS;
+		if (args.length > 1) {
+			names = new String[args.length - 1];
+			System.arraycopy(args, 1, names, 0, names.length);
+		}
+		System.out.printf("%-12s %10s %12s %8s %12s %10s%n", "program", "cycles", "instructions", "CPI", "cycles/s", "wall ms");
+		for (String name : names) {
+			AssemblyCompiler.CompiledProgram program = load(name);
+			RunResult best = null;
+			for (int i = 0; i < rounds; ++i) {
+				RunResult result = run(name, program);
+				if (result.reason != RunResult.StopReason.HALT)
+					throw new IllegalStateException(name + " stopped with " + result.reason);
+				if (best == null || result.elapsedNanos < best.elapsedNanos)
+					best = result;
+			}
+			System.out.printf("%-12s %10d %12d %8.2f %12.0f %10.2f%n", name, best.cycles, best.instructions,
+					best.getCyclesPerInstruction(), best.getCyclesPerSecond(), best.elapsedNanos / 1e6);
+		}
+	}
+	static AssemblyCompiler.CompiledProgram load(String name) throws IOException {
+		try (Reader reader = new InputStreamReader(ResourceLoader.getDefault().open("conf/benchmarks/" + name + ".prg"))) {
+			return AssemblyCompiler.compile(reader);
+		}
+	}
+	/**
+	 * Runs a program on a new machine.
+	 * @param name
+	 * @param program
+	 * @return The run, up to HALT.
+	 */
+	private static RunResult run(String name, AssemblyCompiler.CompiledProgram program) {
+		return prepare(name, program).runUntilHalt();
+	}
+	/**
+	 * @param name
+	 * @param program
+	 * @return A new machine with the program loaded, ready to run from its start.
+	 */
+	static Machine prepare(String name, AssemblyCompiler.CompiledProgram program) {
+		Machine machine = new Machine(true);
+		((Memory) machine.getChip("memory")).loadProgram(0, program);
+		((ClockRegister) machine.getChip("PC")).setValue(0);
+		if (name.equals("ioecho"))
+			for (char c : KEYS.toCharArray())
+				machine.keyPress((short) c);
+		machine.evaluate();
+		return machine;
+	}
+}
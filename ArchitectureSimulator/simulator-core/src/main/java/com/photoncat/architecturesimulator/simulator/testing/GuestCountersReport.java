@@ -0,0 +1,29 @@
+package com.photoncat.architecturesimulator.simulator.testing;
+
+import java.io.IOException;
+
+import com.photoncat.architecturesimulator.simulator.GuestCounters;
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.RunResult;
+
+/**
+ * Runs the guest programs of {@link GuestBenchmark} to HALT and prints the {@link GuestCounters} of each.
+ * @author Xu Ke
+ *
+ */
+public class GuestCountersReport {
+	/**
+	 * Runs the report.
+	 * @param args - Optional: names of the programs to run, default all.
+	 */
+	public static void main(String[] args) throws IOException {
+		String[] names = args.length > 0 ? args : GuestBenchmark.PROGRAMS;
+		for (String name : names) {
+			Machine machine = GuestBenchmark.prepare(name, GuestBenchmark.load(name));
+			machine.startGuestCounters();
+			RunResult result = machine.runUntilHalt();
+			System.out.println("== " + name + ": " + result);
+			System.out.print(machine.getGuestCounters().report());
+		}
+	}
+}
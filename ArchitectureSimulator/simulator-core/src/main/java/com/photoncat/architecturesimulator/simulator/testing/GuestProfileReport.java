@@ -0,0 +1,36 @@
+package com.photoncat.architecturesimulator.simulator.testing;
+
+import java.io.IOException;
+
+import com.photoncat.architecturesimulator.simulator.GuestProfiler;
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.RunResult;
+
+/**
+ * Runs the guest programs of {@link GuestBenchmark} to HALT under the {@link GuestProfiler} and prints the
+ * flat profile and the loops of each.
+ * @author Xu Ke
+ *
+ */
+public class GuestProfileReport {
+	/**
+	 * Runs the report.
+	 * @param args - Optional: cycles between samples, default 0 for every fetch, then names of the programs
+	 * to run, default all.
+	 */
+	public static void main(String[] args) throws IOException {
+		int interval = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+		String[] names = GuestBenchmark.PROGRAMS;
+		if (args.length > 1) {
+			names = new String[args.length - 1];
+			System.arraycopy(args, 1, names, 0, names.length);
+		}
+		for (String name : names) {
+			Machine machine = GuestBenchmark.prepare(name, GuestBenchmark.load(name));
+			machine.startGuestProfiler(interval);
+			RunResult result = machine.runUntilHalt();
+			System.out.println("== " + name + ": " + result);
+			System.out.print(machine.getGuestProfiler().report(10));
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.photoncat.architecturesimulator.simulator.testing;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.Netlist;
+import com.photoncat.architecturesimulator.simulator.RunResult;
+import com.photoncat.architecturesimulator.simulator.tools.NetlistGenerator;
+
+/**
+ * Measures machines made from {@link NetlistGenerator} definitions of growing size: parse time, time to
+ * make and wire the chips, heap footprint, cycles per second and passes evaluate takes to settle.<br>
+ *
+ * Every number is also given per chip. Per chip numbers that grow with the chip count show where the
+ * machine is superlinear: parsing, wiring or settling in evaluate. Heap numbers come from {@link Runtime}
+ * after garbage collection, so run with a fixed heap, such as <i>-Xms2g -Xmx2g</i>.
+ * @author Xu Ke
+ *
+ */
+public class ScalingBenchmark {
+	/**
+	 * Time to spend running cycles at each size.
+	 */
+	private static final long RUN_NANOS = 1000000000L;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args - Optional: a shape, or <i>all</i>, default all, then chip counts, default 100 1000 10000 100000.
+	 */
+	public static void main(String[] args) throws IOException {
+		NetlistGenerator.Shape[] shapes = NetlistGenerator.Shape.values();
+		if (args.length > 0 && !args[0].equalsIgnoreCase("all"))
+			shapes = new NetlistGenerator.Shape[] {NetlistGenerator.Shape.valueOf(args[0].toUpperCase())};
+		int[] counts = {100, 1000, 10000, 100000};
+		if (args.length > 1) {
+			counts = new int[args.length - 1];
+			for (int i = 1; i < args.length; ++i)
+				counts[i - 1] = Integer.parseInt(args[i]);
+		}
+		// Loads classes, which are paid once whatever the size.
+		new Machine(new StringReader(NetlistGenerator.generate(NetlistGenerator.Shape.MIXED, 100)), true).run(10);
+		System.out.println("shape\tchips\tparse ms\twire ms\tKB\tcycles/s\tpasses/cycle\tparse us/chip\twire us/chip\tKB/chip\tns/chip/cycle");
+		for (NetlistGenerator.Shape shape : shapes)
+			for (int count : counts)
+				measure(shape, count);
+	}
+	private static void measure(NetlistGenerator.Shape shape, int count) throws IOException {
+		String definition = NetlistGenerator.generate(shape, count);
+		long start = System.nanoTime();
+		Netlist.parse(new StringReader(definition));
+		long parse = System.nanoTime() - start;
+		long before = usedHeap();
+		start = System.nanoTime();
+		Machine machine = new Machine(new StringReader(definition), true);
+		long load = System.nanoTime() - start;
+		long bytes = usedHeap() - before;
+		long wire = Math.max(0, load - parse);
+		// One cycle first, paying for anything done once.
+		machine.run(1);
+		machine.getSettleStatistics().reset();
+		long cycles = 0;
+		long elapsed = 0;
+		long batch = 1;
+		while (elapsed < RUN_NANOS) {
+			RunResult result = machine.run(batch);
+			cycles += result.cycles;
+			elapsed += result.elapsedNanos;
+			batch *= 2;
+		}
+		double cyclesPerSecond = cycles * 1e9 / elapsed;
+		System.out.printf("%s\t%d\t%.1f\t%.1f\t%d\t%.1f\t%.1f\t%.2f\t%.2f\t%.2f\t%.0f%n", shape, count,
+				parse / 1e6, wire / 1e6, bytes / 1024, cyclesPerSecond,
+				machine.getSettleStatistics().getAveragePasses(),
+				parse / 1e3 / count, wire / 1e3 / count, bytes / 1024.0 / count, 1e9 / cyclesPerSecond / count);
+	}
+	/**
+	 * @return Heap used after garbage collection. One collection often leaves the machine measured before,
+	 * so this collects at least 3 times, and until heap used stops going down.
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 10; ++i) {
+			System.gc();
+			long now = runtime.totalMemory() - runtime.freeMemory();
+			if (i >= 3 && now >= used)
+				break;
+			used = Math.min(used, now);
+		}
+		return used;
+	}
+}
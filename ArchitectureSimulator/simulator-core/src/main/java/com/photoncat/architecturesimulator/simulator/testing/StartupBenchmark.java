@@ -0,0 +1,52 @@
+package com.photoncat.architecturesimulator.simulator.testing;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.chips.ChipFactory;
+
+/**
+ * Measures time to first cycle: making a machine, then one tick and one evaluate.
+ * Runs once with every chip made by reflection, then once with the {@link ChipFactory} registry.
+ * @author Xu Ke
+ *
+ */
+public class StartupBenchmark {
+	/**
+	 * Runs the benchmark.
+	 * @param args - Optional: rounds to measure, default 50.
+	 */
+	public static void main(String[] args) {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		// The first machine pays for class loading and configuration parsing, keep it out of both numbers.
+		firstCycle();
+		ChipFactory.setReflectionOnly(true);
+		long reflection = measure(rounds);
+		ChipFactory.setReflectionOnly(false);
+		long registry = measure(rounds);
+		System.out.printf("Time to first cycle, %d rounds:%n", rounds);
+		System.out.printf("\treflection: %.3f ms%n", reflection / 1e6);
+		System.out.printf("\tregistry:   %.3f ms%n", registry / 1e6);
+	}
+	/**
+	 * @param rounds
+	 * @return Average nanoseconds to first cycle.
+	 */
+	private static long measure(int rounds) {
+		// Warm up.
+		for (int i = 0; i < rounds; ++i)
+			firstCycle();
+		long total = 0;
+		for (int i = 0; i < rounds; ++i)
+			total += firstCycle();
+		return total / rounds;
+	}
+	/**
+	 * @return Nanoseconds from making a machine to the end of its first cycle.
+	 */
+	private static long firstCycle() {
+		long start = System.nanoTime();
+		Machine machine = new Machine();
+		machine.tick();
+		machine.evaluate();
+		return System.nanoTime() - start;
+	}
+}
@@ -35,6 +35,12 @@ public class AssemblyCompiler {
 		public void addInstruction(short inst) {
 			program.add(inst);
 		}
+		/**
+		 * @return Number of words.
+		 */
+		public int size() {
+			return program.size();
+		}
 		/**
 		 * Provides support for <b>for-each</b> loop.
 		 */
@@ -0,0 +1,139 @@
+package com.photoncat.architecturesimulator.simulator.tools;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Turns instruction words back into the source {@link AssemblyCompiler} reads, so that compiling the text
+ * gives back the same word.<br>
+ *
+ * Instruction layout: opcode[15:10], R[9:8], IX[7:6], I[5], address[4:0]. Words that are not an instruction
+ * the compiler could have written come out as plain numbers, which it reads as data.
+ * @author Xu Ke
+ *
+ */
+public class Disassembler {
+	/**
+	 * @param word
+	 * @return The instruction, in the syntax of {@link AssemblyCompiler}.
+	 */
+	public static String disassemble(int word) {
+		word &= 0xFFFF;
+		int opcode = word >> 10;
+		int r = (word >> 8) & 3;
+		int ix = (word >> 6) & 3;
+		int i = (word >> 5) & 1;
+		int address = word & 31;
+		int immediate = word & 255;
+		switch (opcode) {
+		case 0:
+			if (word == 0)
+				return "HLT";
+			break;
+		case 1:
+			return rIxAddress("LDR", r, ix, address, i);
+		case 2:
+			return rIxAddress("STR", r, ix, address, i);
+		case 3:
+			return rIxAddress("LDA", r, ix, address, i);
+		case 4:
+			return rIxAddress("AMR", r, ix, address, i);
+		case 5:
+			return rIxAddress("SMR", r, ix, address, i);
+		case 6:
+			return "AIR " + r + ", " + immediate;
+		case 7:
+			return "SIR " + r + ", " + immediate;
+		case 8:
+			return rIxAddress("JZ", r, ix, address, i);
+		case 9:
+			return rIxAddress("JNE", r, ix, address, i);
+		case 10:
+			return rIxAddress("JCC", r, ix, address, i);
+		case 11:
+			if (r == 0)
+				return ixAddress("JMA", ix, address, i);
+			break;
+		case 12:
+			if (r == 3)
+				return ixAddress("JSR", ix, address, i);
+			break;
+		case 13:
+			if (r == 3)
+				return "RFS " + immediate;
+			break;
+		case 14:
+			return rIxAddress("SOB", r, ix, address, i);
+		case 15:
+			return rIxAddress("JGE", r, ix, address, i);
+		case 16:
+			return rxRy("MLT", word);
+		case 17:
+			return rxRy("DVD", word);
+		case 18:
+			return rxRy("TRR", word);
+		case 19:
+			return rxRy("AND", word);
+		case 20:
+			return rxRy("ORR", word);
+		case 21:
+			if ((word & 255) == 0)
+				return "NOT " + r;
+			break;
+		case 25:
+			return shift("SRC", word);
+		case 26:
+			return shift("RRC", word);
+		case 33:
+			if (r == 0)
+				return ixAddress("LDX", ix, address, i);
+			break;
+		case 34:
+			if (r == 0)
+				return ixAddress("STX", ix, address, i);
+			break;
+		case 49:
+			return "IN " + r + ", " + immediate;
+		case 50:
+			return "OUT " + r + ", " + immediate;
+		case 51:
+			return "CHK " + r + ", " + immediate;
+		case 63:
+			if (word == 63 << 10)
+				return "NOP";
+			break;
+		}
+		return Integer.toString(word);
+	}
+	private static String rIxAddress(String mnemonic, int r, int ix, int address, int i) {
+		return mnemonic + " " + r + ", " + ix + ", " + address + (i == 0 ? "" : ", 1");
+	}
+	private static String ixAddress(String mnemonic, int ix, int address, int i) {
+		return mnemonic + " " + ix + ", " + address + (i == 0 ? "" : ", 1");
+	}
+	private static String rxRy(String mnemonic, int word) {
+		if ((word & 63) != 0)
+			return Integer.toString(word);
+		return mnemonic + " " + ((word >> 8) & 3) + ", " + ((word >> 6) & 3);
+	}
+	/**
+	 * Shifts and rotates: R[9:8], A/L[7], L/R[6], count[3:0].
+	 */
+	private static String shift(String mnemonic, int word) {
+		if ((word & 48) != 0)
+			return Integer.toString(word);
+		return mnemonic + " " + ((word >> 8) & 3) + ", " + (word & 15) + ", " + ((word >> 6) & 1) + ", " + ((word >> 7) & 1);
+	}
+	/**
+	 * Prints a compiled program, one instruction a line with its address.
+	 * @param args - Source file of the program.
+	 */
+	public static void main(String[] args) throws IOException {
+		try (Reader source = new FileReader(args[0])) {
+			int address = 0;
+			for (short word : AssemblyCompiler.compile(source))
+				System.out.printf("%4d  %04x  %s%n", address++, word & 0xFFFF, disassemble(word));
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package com.photoncat.architecturesimulator.simulator.tools;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes synthetic chips definitions in <i>chipsDef.ini</i> format, of any number of chips, for measuring
+ * how machines scale with the size of a design.<br>
+ *
+ * Every shape keeps its registers changing, so every cycle has work to settle:
+ * <ul>
+ * <li>{@link Shape#CHAINS} - Rings of a register and depth - 1 increasers, deep combinational paths.</li>
+ * <li>{@link Shape#FANOUT} - Counters, each driving one bus read by depth not gates.</li>
+ * <li>{@link Shape#REGISTERS} - One ring of registers shifting a counter, all loading every cycle.</li>
+ * <li>{@link Shape#REGISTER_FILES} - Register files, each a set of inner chips, written by a shared counter.</li>
+ * <li>{@link Shape#MIXED} - A quarter of each.</li>
+ * </ul>
+ * Chip counts are top level chips, the names in the definition. A register file counts once, though it
+ * holds a mux, a demux and its registers.
+ * @author Xu Ke
+ *
+ */
+public class NetlistGenerator {
+	public enum Shape {
+		CHAINS, FANOUT, REGISTERS, REGISTER_FILES, MIXED,
+	}
+	/**
+	 * Width of all data cables.
+	 */
+	public static final int WIDTH = 16;
+	/**
+	 * Default length of chains and readers of each bus.
+	 */
+	public static final int DEFAULT_DEPTH = 32;
+	/**
+	 * Address width of generated register files, 4 registers each.
+	 */
+	private static final int REGISTER_FILE_ADDRESS_WIDTH = 2;
+
+	private final StringBuilder chips = new StringBuilder();
+	private final StringBuilder cables = new StringBuilder();
+	private final int depth;
+
+	private NetlistGenerator(int depth) {
+		if (depth < 2)
+			throw new IllegalArgumentException("Depth must be at least 2: " + depth);
+		this.depth = depth;
+	}
+	/**
+	 * Makes a definition with {@link #DEFAULT_DEPTH}.
+	 * @param shape
+	 * @param chipCount - Chips in the definition, at least 16.
+	 * @return The definition.
+	 */
+	public static String generate(Shape shape, int chipCount) {
+		return generate(shape, chipCount, DEFAULT_DEPTH);
+	}
+	/**
+	 * Makes a definition.
+	 * @param shape
+	 * @param chipCount - Chips in the definition, at least 16.
+	 * @param depth - Chips on each chain, or readers of each bus.
+	 * @return The definition.
+	 */
+	public static String generate(Shape shape, int chipCount, int depth) {
+		if (chipCount < 16)
+			throw new IllegalArgumentException("Too few chips: " + chipCount);
+		NetlistGenerator generator = new NetlistGenerator(depth);
+		switch (shape) {
+		case CHAINS:
+			generator.chains("c", chipCount);
+			break;
+		case FANOUT:
+			generator.fanout("f", chipCount);
+			break;
+		case REGISTERS:
+			generator.registers("r", chipCount);
+			break;
+		case REGISTER_FILES:
+			generator.registerFiles("g", chipCount);
+			break;
+		case MIXED:
+			int quarter = chipCount / 4;
+			generator.chains("c", chipCount - 3 * quarter);
+			generator.fanout("f", quarter);
+			generator.registers("r", quarter);
+			generator.registerFiles("g", quarter);
+			break;
+		}
+		return "{\n" + generator.chips + "}\n{\n" + generator.cables + "}\n";
+	}
+	/**
+	 * Rings of a register followed by increasers, one constant loading all registers.
+	 * @param prefix
+	 * @param count - Chips to add, at least 2.
+	 */
+	private void chains(String prefix, int count) {
+		String one = prefix + "One";
+		chip(one, "ConstantChip", 1, 1);
+		StringBuilder load = new StringBuilder(one + ".output");
+		int left = count - 1;
+		for (int ring = 0; left > 0; ++ring) {
+			int length = Math.min(depth, left);
+			left -= length;
+			String register = prefix + ring + "_reg";
+			chip(register, "ClockRegister", WIDTH);
+			load.append(" - ").append(register).append(".load");
+			String previous = register;
+			for (int i = 1; i < length; ++i) {
+				String increaser = prefix + ring + "_inc" + i;
+				chip(increaser, "Increaser", WIDTH);
+				cable(previous + ".output - " + increaser + ".input");
+				previous = increaser;
+			}
+			if (length > 1)
+				cable(previous + ".output - " + register + ".input");
+		}
+		cable(load.toString());
+	}
+	/**
+	 * Counters, a register and an increaser, each driving a bus read by not gates.
+	 * @param prefix
+	 * @param count - Chips to add, at least 3.
+	 */
+	private void fanout(String prefix, int count) {
+		String one = prefix + "One";
+		chip(one, "ConstantChip", 1, 1);
+		StringBuilder load = new StringBuilder(one + ".output");
+		int left = count - 1;
+		for (int bus = 0; left > 0; ++bus) {
+			String register = prefix + bus + "_reg";
+			chip(register, "ClockRegister", WIDTH);
+			load.append(" - ").append(register).append(".load");
+			if (--left == 0)
+				break;
+			String increaser = prefix + bus + "_inc";
+			chip(increaser, "Increaser", WIDTH);
+			--left;
+			cable(increaser + ".output - " + register + ".input");
+			StringBuilder readers = new StringBuilder(register + ".output - " + increaser + ".input");
+			int width = Math.min(depth, left);
+			left -= width;
+			for (int i = 0; i < width; ++i) {
+				String gate = prefix + bus + "_not" + i;
+				chip(gate, "NotGate", WIDTH);
+				readers.append(" - ").append(gate).append(".input");
+			}
+			cable(readers.toString());
+		}
+		cable(load.toString());
+	}
+	/**
+	 * One ring of registers, through an increaser so values keep changing.
+	 * @param prefix
+	 * @param count - Chips to add, at least 3.
+	 */
+	private void registers(String prefix, int count) {
+		String one = prefix + "One";
+		chip(one, "ConstantChip", 1, 1);
+		String increaser = prefix + "Inc";
+		chip(increaser, "Increaser", WIDTH);
+		StringBuilder load = new StringBuilder(one + ".output");
+		String previous = increaser;
+		for (int i = 0; i < count - 2; ++i) {
+			String register = prefix + i;
+			chip(register, "ClockRegister", WIDTH);
+			load.append(" - ").append(register).append(".load");
+			cable(previous + ".output - " + register + ".input");
+			previous = register;
+		}
+		cable(previous + ".output - " + increaser + ".input");
+		cable(load.toString());
+	}
+	/**
+	 * Register files, all written every cycle with a counter, at a register picked by its low bits.
+	 * @param prefix
+	 * @param count - Chips to add, at least 3.
+	 */
+	private void registerFiles(String prefix, int count) {
+		String one = prefix + "One";
+		chip(one, "ConstantChip", 1, 1);
+		String counter = prefix + "Counter";
+		chip(counter, "ClockRegister", WIDTH);
+		String increaser = prefix + "Inc";
+		chip(increaser, "Increaser", WIDTH);
+		cable(increaser + ".output - " + counter + ".input");
+		StringBuilder load = new StringBuilder(one + ".output - " + counter + ".load");
+		StringBuilder data = new StringBuilder(counter + ".output - " + increaser + ".input");
+		for (int i = 0; i < count - 3; ++i) {
+			String file = prefix + i;
+			chip(file, "RegisterFile", REGISTER_FILE_ADDRESS_WIDTH, WIDTH);
+			load.append(" - ").append(file).append(".load");
+			data.append(" - ").append(file).append(".input - ").append(file)
+				.append(".address[0:").append(REGISTER_FILE_ADDRESS_WIDTH - 1).append(']');
+		}
+		cable(load.toString());
+		cable(data.toString());
+	}
+	private void chip(String name, String type, int... params) {
+		chips.append('\t').append(name).append("\t: ").append(type);
+		for (int param : params)
+			chips.append(", ").append(param);
+		chips.append('\n');
+	}
+	private void cable(String ports) {
+		cables.append('\t').append(ports).append('\n');
+	}
+
+	/**
+	 * Writes a definition to a file.
+	 * @param args - Shape, chip count, optional depth and file name. Without a file name it goes to the
+	 * standard output.
+	 */
+	public static void main(String[] args) throws IOException {
+		Shape shape = Shape.valueOf(args[0].toUpperCase());
+		int chipCount = Integer.parseInt(args[1]);
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH;
+		String definition = generate(shape, chipCount, depth);
+		if (args.length > 3) {
+			try (Writer out = new FileWriter(args[3])) {
+				out.write(definition);
+			}
+		} else
+			System.out.print(definition);
+	}
+}
@@ -0,0 +1,20 @@
+package com.photoncat.architecturesimulator.simulator.util;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Opens resources from the class path. The configuration files are packed in the simulator jar this way.
+ * @author Xu Ke
+ *
+ */
+public class ClasspathResourceLoader extends ResourceLoader {
+	@Override
+	public InputStream open(String path) throws IOException {
+		InputStream in = ClasspathResourceLoader.class.getClassLoader().getResourceAsStream(path);
+		if (in == null)
+			throw new FileNotFoundException("Resource not found on class path: " + path);
+		return in;
+	}
+}
@@ -0,0 +1,224 @@
+package com.photoncat.architecturesimulator.simulator.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.photoncat.architecturesimulator.simulator.util.ExceptionHandling.panic;
+
+/**
+ * A cache for parsed configuration files.<br>
+ *
+ * Parsing a configuration file takes a tokenizer pass and a lot of string work, while reading its parsed form back
+ * from a compact binary file doesn't. So after the first parse, the parsed form is stored into a binary file keyed
+ * by the SHA-256 of the source, and later loads use it as long as the source has not changed.<br>
+ *
+ * A cache file is trusted: the netlist read from it names the chip classes to make. So cache files go to a
+ * directory of the user, <i>~/.cache/architecturesimulator</i> unless {@link #setDirectory(File)} says
+ * otherwise, never to a directory shared with other users such as the system temporary directory, and the key
+ * is a cryptographic hash nobody can match with a file of their own.<br>
+ *
+ * Parsed forms are also kept in this process, so loading the same source twice doesn't touch the disk at all.
+ * Parsed forms must never be changed after loading, since they are shared.
+ *
+ * @author Xu Ke
+ *
+ */
+public class ConfigurationCache {
+	/**
+	 * How to parse a configuration, and how to store its parsed form.
+	 * @author Xu Ke
+	 *
+	 * @param <T> Parsed form.
+	 */
+	public interface Codec<T> {
+		/**
+		 * Parses the configuration source.
+		 * @param source
+		 * @return The parsed form.
+		 * @throws IOException
+		 * @throws IllegalStateException When the source format is wrong.
+		 */
+		T parse(Reader source) throws IOException;
+		/**
+		 * Writes the parsed form in binary.
+		 * @param value
+		 * @param out
+		 * @throws IOException
+		 */
+		void write(T value, DataOutput out) throws IOException;
+		/**
+		 * Reads back a parsed form written by {@link #write(Object, DataOutput)}.
+		 * @param in
+		 * @return The parsed form.
+		 * @throws IOException
+		 */
+		T read(DataInput in) throws IOException;
+		/**
+		 * @return The binary format version. Change it whenever write changes, so old cache files are dropped.
+		 */
+		int getVersion();
+	}
+	/**
+	 * Cache file header.
+	 */
+	private static final int MAGIC = 0x53494d43; // "SIMC"
+	/**
+	 * Bytes of a key: the codec version, then the SHA-256 of the source.
+	 */
+	private static final int KEY_LENGTH = 4 + 32;
+	/**
+	 * Where cache files go.
+	 */
+	private static File directory = new File(System.getProperty("user.home"), ".cache" + File.separator + "architecturesimulator");
+	/**
+	 * Parsed forms already loaded in this process, by cache name.
+	 */
+	private static final Map<String, Object[]> loaded = new HashMap<>();
+	/**
+	 * Sets where cache files go. Should be called before any machine is made. Only the user should be able to
+	 * write to it.
+	 * @param dir
+	 */
+	public static void setDirectory(File dir) {
+		directory = dir;
+	}
+	/**
+	 * Loads a configuration, from this process or the cache file if the source has not changed, otherwise by parsing.
+	 * @param name - Cache name. Each configuration file should have its own.
+	 * @param source - Configuration source. It is closed after loading.
+	 * @param codec
+	 * @return The parsed form.
+	 * @throws IOException When reading the source failed.
+	 * @throws IllegalStateException When the source format is wrong.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T load(String name, InputStream source, Codec<T> codec) throws IOException {
+		byte[] bytes = readAll(source);
+		byte[] key = key(bytes, codec.getVersion());
+		synchronized (loaded) {
+			Object[] entry = loaded.get(name);
+			if (entry != null && Arrays.equals((byte[]) entry[0], key))
+				return (T) entry[1];
+		}
+		File file = new File(directory, name + ".bin");
+		T value = readCacheFile(file, key, codec);
+		if (value == null) {
+			value = codec.parse(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes))));
+			writeCacheFile(file, key, value, codec);
+		}
+		synchronized (loaded) {
+			loaded.put(name, new Object[]{key, value});
+		}
+		return value;
+	}
+	/**
+	 * @param source
+	 * @param version - Codec version.
+	 * @return The cache key of a source.
+	 */
+	private static byte[] key(byte[] source, int version) {
+		MessageDigest digest = null;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			panic("SHA-256 is not available.");
+		}
+		byte[] key = new byte[KEY_LENGTH];
+		key[0] = (byte) (version >>> 24);
+		key[1] = (byte) (version >>> 16);
+		key[2] = (byte) (version >>> 8);
+		key[3] = (byte) version;
+		System.arraycopy(digest.digest(source), 0, key, 4, KEY_LENGTH - 4);
+		return key;
+	}
+	/**
+	 * Reads a cache file.
+	 * @return The parsed form, or null if the file is missing, broken or out of date.
+	 */
+	private static <T> T readCacheFile(File file, byte[] key, Codec<T> codec) {
+		if (!file.isFile())
+			return null;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC)
+				return null;
+			byte[] stored = new byte[KEY_LENGTH];
+			in.readFully(stored);
+			if (!Arrays.equals(stored, key))
+				return null;
+			return codec.read(in);
+		} catch (IOException | RuntimeException e) {
+			// A broken cache is just a missing cache.
+			return null;
+		}
+	}
+	/**
+	 * Writes a cache file. Writes to a temporary file first so other processes never see half of it.
+	 * The directory is made if missing, readable and writable by the user only.
+	 * Failing to write is not an error, next start will parse again.
+	 */
+	private static <T> void writeCacheFile(File file, byte[] key, T value, Codec<T> codec) {
+		if (!directory.isDirectory()) {
+			if (!directory.mkdirs())
+				return;
+			directory.setReadable(false, false);
+			directory.setWritable(false, false);
+			directory.setExecutable(false, false);
+			directory.setReadable(true, true);
+			directory.setWritable(true, true);
+			directory.setExecutable(true, true);
+		}
+		File temp;
+		try {
+			temp = File.createTempFile(file.getName(), ".tmp", directory);
+		} catch (IOException e) {
+			return;
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.write(key);
+			codec.write(value, out);
+		} catch (IOException e) {
+			temp.delete();
+			return;
+		}
+		if (!temp.renameTo(file))
+			temp.delete();
+	}
+	/**
+	 * Reads a stream to its end and closes it.
+	 * @param in
+	 * @return All bytes.
+	 * @throws IOException
+	 */
+	private static byte[] readAll(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				out.write(buffer, 0, read);
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package com.photoncat.architecturesimulator.simulator.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Opens resources from a directory on disk, so configuration files can be changed without rebuilding.
+ * @author Xu Ke
+ *
+ */
+public class FileResourceLoader extends ResourceLoader {
+	/**
+	 * Directory resource paths are relative to.
+	 */
+	private final File base;
+	/**
+	 * Constructor.
+	 * @param base - Directory resource paths are relative to.
+	 */
+	public FileResourceLoader(File base) {
+		this.base = base;
+	}
+	@Override
+	public InputStream open(String path) throws IOException {
+		return new FileInputStream(new File(base, path));
+	}
+}
@@ -0,0 +1,39 @@
+package com.photoncat.architecturesimulator.simulator.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Opens configuration files, such as <i>conf/chipsDef.ini</i>, wherever they are kept: on the class path, on disk,
+ * or in the assets of an Android app.<br>
+ *
+ * There is one loader in use at a time. It defaults to {@link ClasspathResourceLoader}.
+ * @author Xu Ke
+ *
+ */
+public abstract class ResourceLoader {
+	/**
+	 * The loader in use.
+	 */
+	private static ResourceLoader current = new ClasspathResourceLoader();
+	/**
+	 * @return The loader in use.
+	 */
+	public static ResourceLoader getDefault() {
+		return current;
+	}
+	/**
+	 * Changes the loader in use. Should be called before any machine is made.
+	 * @param loader
+	 */
+	public static void setDefault(ResourceLoader loader) {
+		current = loader;
+	}
+	/**
+	 * Opens a resource.
+	 * @param path - Resource path, such as <i>conf/chipsDef.ini</i>.
+	 * @return The resource content.
+	 * @throws IOException When the resource cannot be found or opened.
+	 */
+	public abstract InputStream open(String path) throws IOException;
+}
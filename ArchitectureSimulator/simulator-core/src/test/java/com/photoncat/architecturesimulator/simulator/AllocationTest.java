@@ -0,0 +1,58 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+import com.photoncat.architecturesimulator.simulator.chips.ClockRegister;
+import com.photoncat.architecturesimulator.simulator.chips.Memory;
+import com.photoncat.architecturesimulator.simulator.tools.AssemblyCompiler;
+
+/**
+ * Checks that a running machine allocates nothing once warmed up, so running for long does not bring
+ * garbage collection pauses.
+ * @author Xu Ke
+ *
+ */
+public class AllocationTest {
+	/**
+	 * Loads, adds, stores, multiplies and jumps back, forever.
+	 */
+	private static final String LOOP = "LDR 1, 0, 31\nAIR 1, 1\nSTR 1, 0, 31\nMLT 0, 2\nJMA 0, 20";
+	private static final int WARM_UP_CYCLES = 20000;
+	private static final int CYCLES = 1000000;
+
+	@Test
+	public void headlessCycleAllocatesNothing() {
+		assertNoAllocation(new Machine(true));
+	}
+	@Test
+	public void cycleWithPanelAllocatesNothing() {
+		assertNoAllocation(new Machine(false));
+	}
+
+	private static void assertNoAllocation(Machine machine) {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		((Memory) machine.getChip("memory")).loadProgram(20, AssemblyCompiler.compile(LOOP));
+		((ClockRegister) machine.getChip("PC")).setValue(20);
+		machine.evaluate();
+		for (int i = 0; i < WARM_UP_CYCLES; ++i) {
+			machine.tick();
+			machine.evaluate();
+		}
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < CYCLES; ++i) {
+			machine.tick();
+			machine.evaluate();
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		assertEquals("Bytes allocated in " + CYCLES + " cycles", 0, allocated);
+	}
+}
@@ -0,0 +1,73 @@
+package com.photoncat.architecturesimulator.simulator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.photoncat.architecturesimulator.simulator.chips.ClockRegister;
+import com.photoncat.architecturesimulator.simulator.chips.Memory;
+import com.photoncat.architecturesimulator.simulator.tools.AssemblyCompiler;
+
+/**
+ * Checks that a machine given back to a pool is byte for byte the machine it lent, also when it was
+ * restored from a snapshot while borrowed.
+ * @author Xu Ke
+ *
+ */
+public class MachinePoolTest {
+	/**
+	 * Echoes keys to the printer and stores each into memory, until there are none left.
+	 */
+	private static final String ECHO = "CHK 1, 0\nJNE 1, 0, 0\nIN 0, 0\nJZ 0, 0, 7\nOUT 0, 1\nSTR 0, 0, 30\nJMA 0, 0\nHLT";
+	private static final String KEYS = "pool\n";
+	private static final int CYCLES = 2000;
+	private static final int ROUNDS = 3;
+
+	@Test
+	public void giveBackPutsBackBaseline() {
+		// Only one machine, so each borrow gets the machine given back.
+		MachinePool pool = new MachinePool(1);
+		Machine machine = pool.borrow();
+		byte[] baseline = machine.snapshot();
+		for (int round = 0; round < ROUNDS; ++round) {
+			startEcho(machine);
+			machine.run(CYCLES);
+			assertEquals(KEYS, machine.getScreen());
+			pool.giveBack(machine);
+			assertSame(machine, pool.borrow());
+			assertArrayEquals("Snapshot after round " + round, baseline, machine.snapshot());
+		}
+	}
+	@Test
+	public void giveBackAfterRestorePutsBackBaseline() {
+		MachinePool pool = new MachinePool(1);
+		Machine machine = pool.borrow();
+		byte[] baseline = machine.snapshot();
+		startEcho(machine);
+		machine.run(CYCLES / 10);
+		byte[] midway = machine.snapshot();
+		machine.run(CYCLES);
+		// Words loaded from the snapshot are put back as changed since the baseline.
+		machine.restore(midway);
+		machine.run(CYCLES);
+		pool.giveBack(machine);
+		assertSame(machine, pool.borrow());
+		assertArrayEquals(baseline, machine.snapshot());
+		// The baseline is still usable for the next reset.
+		startEcho(machine);
+		machine.run(CYCLES);
+		pool.giveBack(machine);
+		assertSame(machine, pool.borrow());
+		assertArrayEquals(baseline, machine.snapshot());
+	}
+
+	private static void startEcho(Machine machine) {
+		((Memory) machine.getChip("memory")).loadProgram(0, AssemblyCompiler.compile(ECHO));
+		((ClockRegister) machine.getChip("PC")).setValue(0);
+		for (char c : KEYS.toCharArray())
+			machine.keyPress((short) c);
+		machine.evaluate();
+	}
+}
@@ -0,0 +1,28 @@
+package com.photoncat.architecturesimulator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A control unit state change. There are several each instruction, so it is off by default.
+ * @author Xu Ke
+ *
+ */
+@Name("com.photoncat.architecturesimulator.ControlStateChange")
+@Label("Control State Change")
+@Description("The control unit went to another state")
+@Category("Architecture Simulator")
+@StackTrace(false)
+@Enabled(false)
+class ControlStateChangeEvent extends jdk.jfr.Event {
+	@Label("Cycle")
+	long cycle;
+	@Label("From")
+	String from;
+	@Label("To")
+	String to;
+}
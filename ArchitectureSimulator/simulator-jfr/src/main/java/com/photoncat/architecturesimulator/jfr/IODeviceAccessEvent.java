@@ -0,0 +1,28 @@
+package com.photoncat.architecturesimulator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An IO device written or advanced by a tick of the IO chip.
+ * @author Xu Ke
+ *
+ */
+@Name("com.photoncat.architecturesimulator.IODeviceAccess")
+@Label("IO Device Access")
+@Description("An IO device written, or its buffer advanced")
+@Category("Architecture Simulator")
+@StackTrace(false)
+class IODeviceAccessEvent extends jdk.jfr.Event {
+	@Label("Cycle")
+	long cycle;
+	@Label("Port")
+	int port;
+	@Label("Write")
+	boolean write;
+	@Label("Value")
+	short value;
+}
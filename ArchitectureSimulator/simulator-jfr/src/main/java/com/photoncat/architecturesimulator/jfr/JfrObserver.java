@@ -0,0 +1,104 @@
+package com.photoncat.architecturesimulator.jfr;
+
+import jdk.jfr.EventType;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.MachineObserver;
+
+/**
+ * Turns what a machine does into flight recorder events: {@link SimCycleEvent}, {@link SettlePassEvent},
+ * {@link IODeviceAccessEvent} and {@link ControlStateChangeEvent}.<br>
+ *
+ * Events are only made while their type is enabled in the recording, so with no recording running an
+ * observed machine pays a few field reads a cycle. Set one observer per machine:
+ * <i>machine.setObserver(new JfrObserver())</i>.
+ * @author Xu Ke
+ *
+ */
+public class JfrObserver implements MachineObserver {
+	private static final EventType CYCLE = EventType.getEventType(SimCycleEvent.class);
+	private static final EventType PASS = EventType.getEventType(SettlePassEvent.class);
+	private static final EventType IO = EventType.getEventType(IODeviceAccessEvent.class);
+	private static final EventType STATE = EventType.getEventType(ControlStateChangeEvent.class);
+
+	/**
+	 * Events begun and not committed yet, null if their type was off when they would have begun.
+	 */
+	private SimCycleEvent cycleEvent;
+	private SettlePassEvent passEvent;
+	private long cycle;
+
+	/**
+	 * Makes an observer and sets it on a machine.
+	 * @param machine
+	 * @return The observer.
+	 */
+	public static JfrObserver attach(Machine machine) {
+		JfrObserver observer = new JfrObserver();
+		machine.setObserver(observer);
+		return observer;
+	}
+	@Override
+	public void cycleStarted(long cycle) {
+		this.cycle = cycle;
+		if (CYCLE.isEnabled()) {
+			cycleEvent = new SimCycleEvent();
+			cycleEvent.begin();
+		}
+	}
+	@Override
+	public void passStarted(long cycle, int pass) {
+		if (PASS.isEnabled()) {
+			passEvent = new SettlePassEvent();
+			passEvent.begin();
+		}
+	}
+	@Override
+	public void passEnded(long cycle, int pass, boolean changed) {
+		SettlePassEvent event = passEvent;
+		if (event == null)
+			return;
+		passEvent = null;
+		event.end();
+		if (event.shouldCommit()) {
+			event.cycle = cycle;
+			event.pass = pass;
+			event.changed = changed;
+			event.commit();
+		}
+	}
+	@Override
+	public void settled(long cycle, int passes) {
+		SimCycleEvent event = cycleEvent;
+		if (event == null)
+			return;
+		cycleEvent = null;
+		event.end();
+		if (event.shouldCommit()) {
+			event.cycle = cycle;
+			event.passes = passes;
+			event.commit();
+		}
+	}
+	@Override
+	public void ioAccess(int port, boolean write, short value) {
+		if (!IO.isEnabled())
+			return;
+		IODeviceAccessEvent event = new IODeviceAccessEvent();
+		event.cycle = cycle;
+		event.port = port;
+		event.write = write;
+		event.value = value;
+		event.commit();
+	}
+	@Override
+	public void controlStateChanged(String from, String to) {
+		if (!STATE.isEnabled())
+			return;
+		ControlStateChangeEvent event = new ControlStateChangeEvent();
+		event.cycle = cycle;
+		event.from = from;
+		event.to = to;
+		event.commit();
+	}
+}
@@ -0,0 +1,26 @@
+package com.photoncat.architecturesimulator.jfr;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.RunResult;
+
+/**
+ * Runs the boot program on an observed headless machine, to be started with a recording, such as
+ * <i>-XX:StartFlightRecording=filename=simulator.jfr</i>. The <i>run</i> task of this module does that.
+ * @author Xu Ke
+ *
+ */
+public class RecordedRun {
+	/**
+	 * Runs the machine.
+	 * @param args - Optional: cycles to run, default 100000.
+	 */
+	public static void main(String[] args) {
+		long cycles = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		Machine machine = new Machine(true);
+		JfrObserver.attach(machine);
+		machine.IPLMagic();
+		machine.evaluate();
+		RunResult result = machine.run(cycles);
+		System.out.println(result);
+	}
+}
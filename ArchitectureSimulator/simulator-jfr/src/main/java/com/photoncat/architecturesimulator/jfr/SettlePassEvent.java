@@ -0,0 +1,29 @@
+package com.photoncat.architecturesimulator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One pass of evaluate over all chips. Only passes longer than the threshold are recorded, 200 us by default.
+ * @author Xu Ke
+ *
+ */
+@Name("com.photoncat.architecturesimulator.SettlePass")
+@Label("Settle Pass")
+@Description("One pass of evaluate over all chips")
+@Category("Architecture Simulator")
+@StackTrace(false)
+@Threshold("200 us")
+class SettlePassEvent extends jdk.jfr.Event {
+	@Label("Cycle")
+	long cycle;
+	@Label("Pass")
+	int pass;
+	@Label("Changed")
+	@Description("If any chip changed, so another pass follows")
+	boolean changed;
+}
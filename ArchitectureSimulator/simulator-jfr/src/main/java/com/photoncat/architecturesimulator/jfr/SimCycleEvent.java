@@ -0,0 +1,27 @@
+package com.photoncat.architecturesimulator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One machine cycle, from its tick to the end of its evaluate. Only cycles longer than the threshold are
+ * recorded, 1 ms by default.
+ * @author Xu Ke
+ *
+ */
+@Name("com.photoncat.architecturesimulator.SimCycle")
+@Label("Simulation Cycle")
+@Description("A machine cycle: a tick, then evaluate until settled")
+@Category("Architecture Simulator")
+@StackTrace(false)
+@Threshold("1 ms")
+class SimCycleEvent extends jdk.jfr.Event {
+	@Label("Cycle")
+	long cycle;
+	@Label("Settle Passes")
+	int passes;
+}
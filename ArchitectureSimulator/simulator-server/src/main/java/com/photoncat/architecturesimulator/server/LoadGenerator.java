@@ -0,0 +1,186 @@
+package com.photoncat.architecturesimulator.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a {@link SimulatorServer} with many clients and reports request latency and throughput.<br>
+ *
+ * Each client opens a session and loads a small program printing characters, then repeats a round of
+ * <i>RUN</i>, <i>REGS</i> and <i>SCREEN</i>, and ends with <i>RESET</i>. Every request is timed from sending it to
+ * reading the end of its reply.<br>
+ *
+ * Usage: <i>LoadGenerator [host [port [clients [rounds [cycles]]]]]</i>. Port 0 starts a server in this
+ * JVM, so the whole test runs on localhost without anything else.
+ * @author Xu Ke
+ *
+ */
+public class LoadGenerator {
+	/**
+	 * Prints 'A' over and over, from address 20.
+	 */
+	private static final String PROGRAM = "AIR 0, 30; AIR 0, 30; AIR 0, 5; OUT 0, 1; SIR 0, 30; SIR 0, 30; SIR 0, 5; JMA 0, 20";
+	private static final int PROGRAM_ADDRESS = 20;
+
+	private final String host;
+	private final int port;
+	private final int rounds;
+	private final long cyclesPerRun;
+	private final AtomicLong cyclesRun = new AtomicLong();
+	private final AtomicLong wordsPrinted = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+
+	private LoadGenerator(String host, int port, int rounds, long cyclesPerRun) {
+		this.host = host;
+		this.port = port;
+		this.rounds = rounds;
+		this.cyclesPerRun = cyclesPerRun;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String host = args.length > 0 ? args[0] : "localhost";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		int clients = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+		int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+		long cycles = args.length > 4 ? Long.parseLong(args[4]) : 1000;
+		SimulatorServer server = null;
+		if (port == 0) {
+			server = new SimulatorServer(0, clients, SimulatorServer.DEFAULT_CYCLE_QUOTA);
+			server.start();
+			port = server.getPort();
+			host = "localhost";
+		}
+		LoadGenerator generator = new LoadGenerator(host, port, rounds, cycles);
+		// Warm up the server with a short run first.
+		generator.runClients(Math.min(clients, 8), Math.min(rounds, 50));
+		generator.cyclesRun.set(0);
+		generator.wordsPrinted.set(0);
+		generator.errors.set(0);
+		long start = System.nanoTime();
+		long[] latencies = generator.runClients(clients, rounds);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		generator.report(clients, latencies, seconds);
+		if (server != null) {
+			System.out.println("\tmachine pool: " + server.getMachinePool());
+			server.close();
+		}
+	}
+	/**
+	 * Runs clients to the end.
+	 * @param clients
+	 * @param rounds
+	 * @return Latencies of all requests, sorted.
+	 */
+	private long[] runClients(int clients, final int rounds) throws InterruptedException {
+		final long[][] latencies = new long[clients][];
+		final CountDownLatch done = new CountDownLatch(clients);
+		for (int i = 0; i < clients; ++i) {
+			final int client = i;
+			new Thread(() -> {
+				try {
+					latencies[client] = runClient(rounds);
+				} catch (IOException e) {
+					errors.incrementAndGet();
+					latencies[client] = new long[0];
+				} finally {
+					done.countDown();
+				}
+			}, "load-client-" + i).start();
+		}
+		done.await();
+		int total = 0;
+		for (long[] l : latencies)
+			total += l.length;
+		long[] all = new long[total];
+		int offset = 0;
+		for (long[] l : latencies) {
+			System.arraycopy(l, 0, all, offset, l.length);
+			offset += l.length;
+		}
+		Arrays.sort(all);
+		return all;
+	}
+	/**
+	 * One client session.
+	 * @param rounds
+	 * @return Latencies of its requests.
+	 */
+	private long[] runClient(int rounds) throws IOException {
+		long[] latencies = new long[rounds * 3];
+		int count = 0;
+		try (Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+			request(in, out, "LOAD " + PROGRAM_ADDRESS + " " + PROGRAM);
+			request(in, out, "PC " + PROGRAM_ADDRESS);
+			for (int round = 0; round < rounds; ++round) {
+				long start = System.nanoTime();
+				String reply = request(in, out, "RUN " + cyclesPerRun);
+				latencies[count++] = System.nanoTime() - start;
+				if (reply.startsWith("OK "))
+					cyclesRun.addAndGet(Long.parseLong(reply.split(" ")[1]));
+				start = System.nanoTime();
+				request(in, out, "REGS");
+				latencies[count++] = System.nanoTime() - start;
+				start = System.nanoTime();
+				reply = request(in, out, "SCREEN");
+				if (reply.startsWith("OK "))
+					for (int lines = Integer.parseInt(reply.substring(3)); lines > 0; --lines)
+						in.readLine();
+				latencies[count++] = System.nanoTime() - start;
+			}
+			request(in, out, "RESET");
+			request(in, out, "QUIT");
+		}
+		return latencies;
+	}
+	/**
+	 * Sends a command and reads its reply line, counting printed words streamed ahead of it.
+	 * @return The reply.
+	 */
+	private String request(BufferedReader in, Writer out, String command) throws IOException {
+		out.write(command);
+		out.write('\n');
+		out.flush();
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.startsWith("OUT ")) {
+				wordsPrinted.incrementAndGet();
+				continue;
+			}
+			if (line.startsWith("ERR"))
+				errors.incrementAndGet();
+			return line;
+		}
+		throw new IOException("Server closed the session.");
+	}
+	private void report(int clients, long[] latencies, double seconds) {
+		System.out.printf("%d clients, %d requests in %.2f s%n", clients, latencies.length, seconds);
+		System.out.printf("\tthroughput: %.0f requests/s, %.0f cycles/s%n", latencies.length / seconds, cyclesRun.get() / seconds);
+		System.out.printf("\tlatency p50: %.3f ms, p90: %.3f ms, p99: %.3f ms, max: %.3f ms%n",
+				percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+				latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+		System.out.printf("\tprinted words streamed: %d, errors: %d%n", wordsPrinted.get(), errors.get());
+	}
+	/**
+	 * @param sorted - Latencies in nanoseconds, sorted.
+	 * @param percent
+	 * @return The percentile in milliseconds.
+	 */
+	private static double percentile(long[] sorted, int percent) {
+		if (sorted.length == 0)
+			return 0;
+		int index = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+}
@@ -0,0 +1,249 @@
+package com.photoncat.architecturesimulator.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.Printer;
+import com.photoncat.architecturesimulator.simulator.RunResult;
+import com.photoncat.architecturesimulator.simulator.chips.ClockRegister;
+import com.photoncat.architecturesimulator.simulator.chips.Memory;
+import com.photoncat.architecturesimulator.simulator.chips.RegisterFile;
+import com.photoncat.architecturesimulator.simulator.tools.AssemblyCompiler;
+
+/**
+ * One client of a {@link SimulatorServer}, with its own machine.<br>
+ *
+ * The client sends one command a line and gets one reply line, starting with <i>OK</i> or <i>ERR</i>:
+ * <ul>
+ * <li><i>LOAD addr source</i> - Assembles source, instructions separated by ';', into memory at addr.</li>
+ * <li><i>PC addr</i> - Sets the program counter.</li>
+ * <li><i>IPL</i> - Loads the boot program.</li>
+ * <li><i>RESET</i> - Puts the machine back as the session started, with the boot program loaded.</li>
+ * <li><i>RUN n</i> - Runs at most n cycles. Replies <i>OK cycles reason nanos</i>.</li>
+ * <li><i>STEP</i> - Runs one cycle, replies like RUN.</li>
+ * <li><i>REGS</i> - Replies <i>OK name=value ...</i> for all registers.</li>
+ * <li><i>SCREEN</i> - Replies <i>OK lines</i>, then that many lines of printer output.</li>
+ * <li><i>KEY text</i> - Presses the keys of text, then enter.</li>
+ * <li><i>QUIT</i> - Ends the session.</li>
+ * </ul>
+ * While running, every word printed is sent as it appears in an <i>OUT code</i> line, ahead of the reply.
+ * Output is written between slices of cycles with blocking writes, so a client reading slowly slows its
+ * own machine down rather than filling the server memory.<br>
+ *
+ * Every session has a quota of cycles. Runs are cut at the quota, and once it is used up RUN replies
+ * <i>ERR quota exceeded</i>.
+ * @author Xu Ke
+ *
+ */
+class Session {
+	/**
+	 * Cycles run for each run permit taken.
+	 */
+	static final int SLICE_CYCLES = 1024;
+	/**
+	 * Words printed and not sent yet, most are sent after each slice.
+	 */
+	private static final int OUTPUT_BUFFER = 4096;
+
+	private final SimulatorServer server;
+	private final Socket socket;
+	private final Machine machine;
+	private Writer out;
+	private final short[] printed = new short[OUTPUT_BUFFER];
+	private int printedCount = 0;
+	private boolean printedLost = false;
+	private long cyclesUsed = 0;
+
+	Session(SimulatorServer server, Socket socket) {
+		this.server = server;
+		this.socket = socket;
+		machine = server.getMachinePool().borrow();
+		machine.setPrinterListener(new Printer.Listener() {
+			@Override
+			public void printed(short word) {
+				if (printedCount < printed.length)
+					printed[printedCount++] = word;
+				else
+					printedLost = true;
+			}
+		});
+	}
+	/**
+	 * Serves commands until the client quits or leaves.
+	 */
+	void serve() {
+		try (Socket s = socket) {
+			s.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+			out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII));
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty())
+					continue;
+				if (!execute(line))
+					break;
+				out.flush();
+			}
+			out.flush();
+		} catch (IOException e) {
+			// Client left.
+		} finally {
+			server.getMachinePool().giveBack(machine);
+		}
+	}
+	/**
+	 * Executes a command and writes the reply.
+	 * @param line
+	 * @return If the session goes on.
+	 * @throws IOException When the client left.
+	 */
+	private boolean execute(String line) throws IOException {
+		int space = line.indexOf(' ');
+		String command = (space < 0 ? line : line.substring(0, space)).toUpperCase();
+		String argument = space < 0 ? "" : line.substring(space + 1).trim();
+		try {
+			switch (command) {
+			case "LOAD":
+				load(argument);
+				break;
+			case "PC":
+				((ClockRegister) machine.getChip("PC")).setValue(Integer.parseInt(argument));
+				machine.evaluate();
+				reply("OK");
+				break;
+			case "IPL":
+				machine.IPLMagic();
+				machine.evaluate();
+				reply("OK");
+				break;
+			case "RESET":
+				machine.resetToBaseline();
+				reply("OK");
+				break;
+			case "RUN":
+				run(Long.parseLong(argument));
+				break;
+			case "STEP":
+				run(1);
+				break;
+			case "REGS":
+				registers();
+				break;
+			case "SCREEN":
+				screen();
+				break;
+			case "KEY":
+				for (int i = 0; i < argument.length(); ++i)
+					machine.keyPress((short) argument.charAt(i));
+				machine.keyPress((short) '\n');
+				reply("OK");
+				break;
+			case "QUIT":
+				reply("OK bye");
+				return false;
+			default:
+				reply("ERR unknown command " + command);
+			}
+		} catch (NumberFormatException e) {
+			reply("ERR bad number " + argument);
+		} catch (IllegalStateException e) {
+			// Assembly errors.
+			reply("ERR " + e.getMessage());
+		} catch (RuntimeException e) {
+			// Whatever a command line does wrong, the session goes on.
+			reply("ERR " + e);
+		}
+		return true;
+	}
+	private void load(String argument) throws IOException {
+		int space = argument.indexOf(' ');
+		if (space < 0) {
+			reply("ERR usage: LOAD addr source");
+			return;
+		}
+		int address = Integer.parseInt(argument.substring(0, space));
+		AssemblyCompiler.CompiledProgram program = AssemblyCompiler.compile(argument.substring(space + 1).replace(';', '\n'));
+		Memory memory = (Memory) machine.getChip("memory");
+		if (address < 0 || address > memory.getSize() - program.size()) {
+			reply("ERR program of " + program.size() + " words at " + address + " does not fit in " + memory.getSize() + " words");
+			return;
+		}
+		memory.loadProgram(address, program);
+		machine.evaluate();
+		reply("OK");
+	}
+	/**
+	 * Runs in slices, each under a run permit, sending output after each slice.
+	 * @param cycles - Cycles asked for.
+	 */
+	private void run(long cycles) throws IOException {
+		long left = Math.min(cycles, server.getCycleQuota() - cyclesUsed);
+		if (left <= 0 && cycles > 0) {
+			reply("ERR quota exceeded");
+			return;
+		}
+		long done = 0;
+		long start = System.nanoTime();
+		RunResult.StopReason reason = RunResult.StopReason.CYCLE_BUDGET;
+		while (done < left) {
+			RunResult slice;
+			server.getRunPermits().acquireUninterruptibly();
+			try {
+				slice = machine.run(Math.min(SLICE_CYCLES, left - done));
+			} finally {
+				server.getRunPermits().release();
+			}
+			done += slice.cycles;
+			sendPrinted();
+			if (slice.reason != RunResult.StopReason.CYCLE_BUDGET) {
+				reason = slice.reason;
+				break;
+			}
+		}
+		cyclesUsed += done;
+		reply("OK " + done + " " + reason + " " + (System.nanoTime() - start));
+	}
+	private void sendPrinted() throws IOException {
+		for (int i = 0; i < printedCount; ++i) {
+			out.write("OUT ");
+			out.write(Integer.toString(printed[i]));
+			out.write('\n');
+		}
+		if (printedLost)
+			out.write("OUT lost\n");
+		if (printedCount > 0 || printedLost)
+			out.flush();
+		printedCount = 0;
+		printedLost = false;
+	}
+	private void registers() throws IOException {
+		StringBuilder sb = new StringBuilder("OK");
+		for (String name : new String[] {"PC", "MAR", "MBR", "IR", "CC"})
+			sb.append(' ').append(name).append('=').append(((ClockRegister) machine.getChip(name)).getValue());
+		RegisterFile gprf = (RegisterFile) machine.getChip("GPRF");
+		for (int i = 0; i < gprf.getSize(); ++i)
+			sb.append(" R").append(i).append('=').append(gprf.getValue(i));
+		RegisterFile irf = (RegisterFile) machine.getChip("IRF");
+		for (int i = 1; i < irf.getSize(); ++i)
+			sb.append(" X").append(i).append('=').append(irf.getValue(i));
+		reply(sb.toString());
+	}
+	private void screen() throws IOException {
+		String[] lines = machine.getScreen().split("\n", -1);
+		reply("OK " + lines.length);
+		for (String l : lines)
+			reply(l);
+	}
+	private void reply(String line) throws IOException {
+		out.write(line);
+		out.write('\n');
+	}
+}
@@ -0,0 +1,160 @@
+package com.photoncat.architecturesimulator.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import com.photoncat.architecturesimulator.simulator.Machine;
+import com.photoncat.architecturesimulator.simulator.MachinePool;
+
+/**
+ * Hosts many simulators in one JVM behind a loopback socket.<br>
+ *
+ * Every connection is a session with its own thread and its own {@link Machine} from a {@link MachinePool},
+ * talking the line protocol of {@link Session}. Session threads are virtual threads when the JVM has them,
+ * and plain threads otherwise. Sessions share the processors through a fair set of run permits, taken for
+ * each slice of cycles run, so a long run cannot starve short ones.<br>
+ *
+ * Usage: <i>SimulatorServer [port [max sessions [cycle quota]]]</i>
+ * @author Xu Ke
+ *
+ */
+public class SimulatorServer implements Closeable {
+	public static final int DEFAULT_PORT = 7312;
+	public static final int DEFAULT_MAX_SESSIONS = 1024;
+	/**
+	 * Cycles a session may run in total.
+	 */
+	public static final long DEFAULT_CYCLE_QUOTA = 100000000L;
+	/**
+	 * Most machines kept ready for new sessions.
+	 */
+	public static final int DEFAULT_POOL_SIZE = 16;
+
+	private final ServerSocket serverSocket;
+	private final long cycleQuota;
+	private final ExecutorService sessionExecutor;
+	/**
+	 * Sessions left to open.
+	 */
+	private final Semaphore sessions;
+	/**
+	 * One for each processor. Taken while running a slice of cycles.
+	 */
+	private final Semaphore runPermits = new Semaphore(Runtime.getRuntime().availableProcessors(), true);
+	private final MachinePool pool;
+	private Thread acceptor;
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructor. Binds the socket, call {@link #start()} to take connections.
+	 * @param port - Port on the loopback address, 0 for any free one.
+	 * @param maxSessions - Most sessions open at the same time. More connections are turned away.
+	 * @param cycleQuota - Cycles a session may run in total.
+	 * @throws IOException When the port cannot be bound.
+	 */
+	public SimulatorServer(int port, int maxSessions, long cycleQuota) throws IOException {
+		this.cycleQuota = cycleQuota;
+		sessions = new Semaphore(maxSessions);
+		pool = new MachinePool(Math.min(maxSessions, DEFAULT_POOL_SIZE));
+		serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		sessionExecutor = newSessionExecutor();
+	}
+	/**
+	 * @return The port taking connections.
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+	/**
+	 * Starts taking connections on a thread of its own.
+	 */
+	public void start() {
+		acceptor = new Thread(this::acceptLoop, "simulator-server-acceptor");
+		acceptor.start();
+	}
+	/**
+	 * Stops taking connections. Open sessions end when their clients leave.
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		serverSocket.close();
+		sessionExecutor.shutdown();
+	}
+	/**
+	 * @return The pool session machines come from, for its metrics.
+	 */
+	public MachinePool getMachinePool() {
+		return pool;
+	}
+	long getCycleQuota() {
+		return cycleQuota;
+	}
+	Semaphore getRunPermits() {
+		return runPermits;
+	}
+
+	private void acceptLoop() {
+		while (!closed) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				if (!closed)
+					e.printStackTrace();
+				return;
+			}
+			if (!sessions.tryAcquire()) {
+				turnAway(socket);
+				continue;
+			}
+			sessionExecutor.execute(() -> {
+				try {
+					new Session(this, socket).serve();
+				} finally {
+					sessions.release();
+				}
+			});
+		}
+	}
+	private static void turnAway(Socket socket) {
+		try {
+			Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+			out.write("ERR busy\n");
+			out.flush();
+			socket.close();
+		} catch (IOException e) {
+			// Client is gone already.
+		}
+	}
+	/**
+	 * Makes an executor starting a virtual thread for each session when the JVM has them (Java 21 and
+	 * later), or a cached pool of threads otherwise. Reflection keeps this module building for Java 8.
+	 * @return The executor.
+	 */
+	private static ExecutorService newSessionExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SESSIONS;
+		long cycleQuota = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_CYCLE_QUOTA;
+		SimulatorServer server = new SimulatorServer(port, maxSessions, cycleQuota);
+		server.start();
+		System.out.println("Simulator server on " + server.serverSocket.getLocalSocketAddress());
+	}
+}